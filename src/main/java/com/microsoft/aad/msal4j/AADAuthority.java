@@ -23,6 +23,7 @@
 
 package com.microsoft.aad.msal4j;
 
+import java.net.MalformedURLException;
 import java.net.URL;
 
 import lombok.AccessLevel;
@@ -61,4 +62,11 @@ class AADAuthority extends Authority {
         this.isTenantless = TENANTLESS_TENANT_NAME.equalsIgnoreCase(tenant);
         this.selfSignedJwtAudience = this.tokenEndpoint;
     }
+
+    /**
+     * @return authority of the same cloud instance for the given tenant
+     */
+    AADAuthority withTenant(String tenant) throws MalformedURLException {
+        return new AADAuthority(new URL(String.format(AADAuthorityFormat, host, tenant)));
+    }
 }
\ No newline at end of file
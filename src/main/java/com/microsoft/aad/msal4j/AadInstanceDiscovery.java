@@ -29,7 +29,8 @@ import org.slf4j.LoggerFactory;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 class AadInstanceDiscovery {
     private static final Logger log = LoggerFactory.getLogger(AadInstanceDiscovery.class);
@@ -53,8 +54,6 @@ class AadInstanceDiscovery {
     private final static String INSTANCE_DISCOVERY_REQUEST_PARAMETERS_TEMPLATE =
             "?api-version=1.1&authorization_endpoint={authorizeEndpoint}";
 
-    static ConcurrentHashMap<String, InstanceDiscoveryMetadataEntry> cache = new ConcurrentHashMap<>();
-
     private static String getAuthorizeEndpoint(String host, String tenant) {
         return AUTHORIZE_ENDPOINT_TEMPLATE.
                 replace("{host}", host).
@@ -91,7 +90,7 @@ class AadInstanceDiscovery {
         }
     }
 
-    private static void doInstanceDiscoveryAndCache
+    private static InstanceDiscoveryMetadataEntry doInstanceDiscoveryAndCache
             (URL authorityUrl, boolean validateAuthority, MsalRequest msalRequest, ServiceBundle serviceBundle) throws Exception {
 
         InstanceDiscoveryResponse instanceDiscoveryResponse =
@@ -101,31 +100,50 @@ class AadInstanceDiscovery {
             validate(instanceDiscoveryResponse);
         }
 
-        cacheInstanceDiscoveryMetadata(authorityUrl.getAuthority(), instanceDiscoveryResponse);
+        return cacheInstanceDiscoveryMetadata(
+                serviceBundle.getInstanceDiscoveryCache(), authorityUrl.getAuthority(), instanceDiscoveryResponse);
     }
 
     static InstanceDiscoveryMetadataEntry GetMetadataEntry
             (URL authorityUrl, boolean validateAuthority, MsalRequest msalRequest, ServiceBundle serviceBundle) throws Exception {
 
-        InstanceDiscoveryMetadataEntry result = cache.get(authorityUrl.getAuthority());
+        String host = authorityUrl.getAuthority();
+        String discoveryKey = host.toLowerCase() + (validateAuthority ? "" : "-unvalidated");
 
-        if (result == null) {
-            doInstanceDiscoveryAndCache(authorityUrl, validateAuthority, msalRequest, serviceBundle);
-        }
+        Executor refreshExecutor = serviceBundle.getExecutorService() != null ?
+                serviceBundle.getExecutorService() :
+                ForkJoinPool.commonPool();
 
-        return cache.get(authorityUrl.getAuthority());
+        return serviceBundle.getInstanceDiscoveryCache().getOrDiscover(
+                host,
+                discoveryKey,
+                () -> doInstanceDiscoveryAndCache(authorityUrl, validateAuthority, msalRequest, serviceBundle),
+                refreshExecutor);
     }
 
-    private static void cacheInstanceDiscoveryMetadata(String host, InstanceDiscoveryResponse instanceDiscoveryResponse) {
+    /**
+     * @return metadata of the host
+     */
+    private static InstanceDiscoveryMetadataEntry cacheInstanceDiscoveryMetadata(
+            InstanceDiscoveryCache cache, String host, InstanceDiscoveryResponse instanceDiscoveryResponse) {
+        InstanceDiscoveryMetadataEntry hostEntry = null;
         if (instanceDiscoveryResponse.getMetadata() != null) {
             for (InstanceDiscoveryMetadataEntry entry : instanceDiscoveryResponse.getMetadata()) {
                 for (String alias : entry.aliases) {
                     cache.put(alias, entry);
+                    if (hostEntry == null && alias.equalsIgnoreCase(host)) {
+                        hostEntry = entry;
+                    }
                 }
             }
         }
-        cache.putIfAbsent(host, InstanceDiscoveryMetadataEntry.builder().
-                preferredCache(host).
-                preferredNetwork(host).build());
+        if (hostEntry == null) {
+            hostEntry = InstanceDiscoveryMetadataEntry.builder().
+                    preferredCache(host).
+                    preferredNetwork(host).
+                    aliases(new String[]{host}).build();
+        }
+        cache.put(host, hostEntry);
+        return hostEntry;
     }
 }
@@ -24,12 +24,17 @@
 package com.microsoft.aad.msal4j;
 
 import com.google.gson.annotations.SerializedName;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Accessors(fluent = true)
 @Getter
@@ -54,6 +59,80 @@ class AccessTokenCacheEntity extends Credential {
     @SerializedName("extended_expires_on")
     private String extExpiresOn;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Set<String> scopeSet;
+
+    @Setter(AccessLevel.NONE)
+    private transient long cachedAtSec;
+
+    @Setter(AccessLevel.NONE)
+    private transient long expiresOnSec;
+
+    @Setter(AccessLevel.NONE)
+    private transient long extExpiresOnSec;
+
+    AccessTokenCacheEntity target(String target) {
+        this.target = target;
+        this.scopeSet = null;
+        return this;
+    }
+
+    AccessTokenCacheEntity cachedAt(String cachedAt) {
+        this.cachedAt = cachedAt;
+        this.cachedAtSec = parseTimestamp(cachedAt);
+        return this;
+    }
+
+    AccessTokenCacheEntity expiresOn(String expiresOn) {
+        this.expiresOn = expiresOn;
+        this.expiresOnSec = parseTimestamp(expiresOn);
+        return this;
+    }
+
+    AccessTokenCacheEntity extExpiresOn(String extExpiresOn) {
+        this.extExpiresOn = extExpiresOn;
+        this.extExpiresOnSec = parseTimestamp(extExpiresOn);
+        return this;
+    }
+
+    /**
+     * Fills numeric timestamps from their string representation,
+     * used for entities created by deserialization
+     */
+    void parseTimestamps() {
+        cachedAtSec = parseTimestamp(cachedAt);
+        expiresOnSec = parseTimestamp(expiresOn);
+        extExpiresOnSec = parseTimestamp(extExpiresOn);
+    }
+
+    private static long parseTimestamp(String timestamp) {
+        if (StringHelper.isBlank(timestamp)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(timestamp.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return case insensitive set of scopes from target, parsed once and reused for scope matching
+     */
+    Set<String> scopeSet() {
+        Set<String> result = scopeSet;
+        if (result == null) {
+            Set<String> scopes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            if (target != null) {
+                scopes.addAll(Arrays.asList(target.split(Constants.SCOPES_SEPARATOR)));
+            }
+            result = Collections.unmodifiableSet(scopes);
+            scopeSet = result;
+        }
+        return result;
+    }
+
     String getKey() {
         List<String> keyParts = new ArrayList<>();
 
@@ -24,6 +24,7 @@
 package com.microsoft.aad.msal4j;
 
 import java.util.Collection;
+import java.util.Set;
 import java.util.concurrent.CompletionException;
 import java.util.function.Supplier;
 
@@ -42,11 +43,11 @@ class AccountsSupplier implements Supplier<Collection<Account>> {
     public Collection<Account> get() {
         Collection<Account> accounts;
         try {
-            InstanceDiscoveryMetadataEntry instanceDiscoveryData =
-                    AadInstanceDiscovery.cache.get(clientApplication.authenticationAuthority.host());
+            Set<String> environmentAliases = clientApplication.getServiceBundle().getInstanceDiscoveryCache().
+                    getAliases(clientApplication.authenticationAuthority.host());
 
             accounts = clientApplication.tokenCache.getAccounts
-                    (clientApplication.clientId(), instanceDiscoveryData.getAliasesSet());
+                    (clientApplication.clientId(), environmentAliases);
 
         } catch (Exception ex) {
             clientApplication.log.error(
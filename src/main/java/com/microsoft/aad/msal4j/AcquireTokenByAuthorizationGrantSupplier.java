@@ -31,6 +31,9 @@ import org.apache.commons.codec.binary.Base64;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 class AcquireTokenByAuthorizationGrantSupplier extends AuthenticationResultSupplier {
 
@@ -46,6 +49,51 @@ class AcquireTokenByAuthorizationGrantSupplier extends AuthenticationResultSuppl
     }
 
     AuthenticationResult execute() throws Exception {
+        return clientApplication.acquireTokenCommon(msalRequest, resolveAuthority());
+    }
+
+    /**
+     * Grant processing, which needs user realm and WS-Trust requests, and instance discovery of hosts
+     * without cached metadata are run on the executor, while the token request itself is sent without blocking
+     */
+    @Override
+    CompletableFuture<AuthenticationResult> executeAsync(ExecutorService executorService) {
+        CompletableFuture<Authority> authorityFuture;
+        if (requiresGrantProcessing()) {
+            authorityFuture = supplyAsync(() -> {
+                try {
+                    return resolveAuthority();
+                } catch (Exception ex) {
+                    throw new CompletionException(ex);
+                }
+            }, executorService);
+        } else {
+            authorityFuture = resolveAuthorityAsync(executorService);
+        }
+
+        return authorityFuture.thenCompose(authority -> {
+            try {
+                return clientApplication.acquireTokenCommonAsync(msalRequest, authority);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    private boolean requiresGrantProcessing() {
+        AbstractMsalAuthorizationGrant authGrant = msalRequest.msalAuthorizationGrant();
+        if (authGrant instanceof IntegratedWindowsAuthorizationGrant) {
+            return true;
+        }
+        if (!(authGrant instanceof OAuthAuthorizationGrant)) {
+            return false;
+        }
+        AuthorizationGrant grant = ((OAuthAuthorizationGrant) authGrant).getAuthorizationGrant();
+        return grant instanceof ResourceOwnerPasswordCredentialsGrant &&
+                msalRequest.application().authenticationAuthority.authorityType != AuthorityType.B2C;
+    }
+
+    private Authority resolveAuthority() throws Exception {
         AbstractMsalAuthorizationGrant authGrant = msalRequest.msalAuthorizationGrant();
         if (authGrant instanceof OAuthAuthorizationGrant) {
             msalRequest.msalAuthorizationGrant =
@@ -68,7 +116,23 @@ class AcquireTokenByAuthorizationGrantSupplier extends AuthenticationResultSuppl
             requestAuthority = getAuthorityWithPrefNetworkHost(requestAuthority.authority());
         }
 
-        return clientApplication.acquireTokenCommon(msalRequest, requestAuthority);
+        return requestAuthority;
+    }
+
+    /**
+     * Asynchronous version of {@link #resolveAuthority()} for grants which need no processing
+     */
+    private CompletableFuture<Authority> resolveAuthorityAsync(ExecutorService executorService) {
+        if(requestAuthority == null){
+            requestAuthority = clientApplication.authenticationAuthority;
+        }
+
+        if(requestAuthority.authorityType == AuthorityType.B2C){
+            return CompletableFuture.completedFuture(requestAuthority);
+        }
+
+        return getAuthorityWithPrefNetworkHostAsync(requestAuthority.authority(), executorService).
+                thenApply(authority -> requestAuthority = authority);
     }
 
     private OAuthAuthorizationGrant processPasswordGrant(
@@ -0,0 +1,100 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+class AcquireTokenByClientCredentialSupplier extends AuthenticationResultSupplier {
+
+    private ClientCredentialRequest clientCredentialRequest;
+
+    AcquireTokenByClientCredentialSupplier(ConfidentialClientApplication clientApplication,
+                                           ClientCredentialRequest clientCredentialRequest) {
+        super(clientApplication, clientCredentialRequest);
+
+        this.clientCredentialRequest = clientCredentialRequest;
+    }
+
+    @Override
+    AuthenticationResult execute() throws Exception {
+
+        AuthenticationResult res = getCachedResult();
+        if (res != null) {
+            return res;
+        }
+
+        AcquireTokenByAuthorizationGrantSupplier acquireTokenByAuthorisationGrantSupplier =
+                new AcquireTokenByAuthorizationGrantSupplier(
+                        clientApplication, clientCredentialRequest, clientCredentialRequest.requestAuthority());
+
+        return acquireTokenByAuthorisationGrantSupplier.execute();
+    }
+
+    @Override
+    CompletableFuture<AuthenticationResult> executeAsync(ExecutorService executorService) {
+        return supplyAsync(() -> {
+            try {
+                return getCachedResult();
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, executorService).thenCompose(res -> {
+            if (res != null) {
+                return CompletableFuture.completedFuture(res);
+            }
+
+            AcquireTokenByAuthorizationGrantSupplier acquireTokenByAuthorisationGrantSupplier =
+                    new AcquireTokenByAuthorizationGrantSupplier(
+                        clientApplication, clientCredentialRequest, clientCredentialRequest.requestAuthority());
+
+            return acquireTokenByAuthorisationGrantSupplier.executeAsync(executorService);
+        });
+    }
+
+    /**
+     * @return cached token of the application, or null if there is none, or cache should be skipped
+     */
+    private AuthenticationResult getCachedResult() throws Exception {
+        if (!clientCredentialRequest.parameters().skipCache()) {
+            Authority requestAuthority = clientCredentialRequest.requestAuthority();
+            if (requestAuthority.authorityType != AuthorityType.B2C) {
+                requestAuthority = getAuthorityWithPrefNetworkHost(requestAuthority.authority());
+            }
+
+            AuthenticationResult res = clientApplication.tokenCache.getApplicationAuthenticationResult(
+                    requestAuthority,
+                    clientCredentialRequest.parameters().scopes(),
+                    clientApplication.clientId(),
+                    clientApplication.getServiceBundle().getInstanceDiscoveryCache().
+                            getAliases(requestAuthority.host()));
+
+            if (!StringHelper.isBlank(res.accessToken())) {
+                return res;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+class AcquireTokenByOnBehalfOfSupplier extends AuthenticationResultSupplier {
+
+    private OnBehalfOfRequest onBehalfOfRequest;
+
+    AcquireTokenByOnBehalfOfSupplier(ConfidentialClientApplication clientApplication,
+                                     OnBehalfOfRequest onBehalfOfRequest) {
+        super(clientApplication, onBehalfOfRequest);
+
+        this.onBehalfOfRequest = onBehalfOfRequest;
+    }
+
+    @Override
+    AuthenticationResult execute() throws Exception {
+
+        String cacheKey = onBehalfOfRequest.getCacheKey();
+
+        if (!onBehalfOfRequest.parameters().skipCache()) {
+            AuthenticationResult res = clientApplication.tokenCache.getOnBehalfOfAuthenticationResult(cacheKey);
+            if (res != null) {
+                return res;
+            }
+        }
+
+        AcquireTokenByAuthorizationGrantSupplier acquireTokenByAuthorisationGrantSupplier =
+                new AcquireTokenByAuthorizationGrantSupplier(
+                        clientApplication, onBehalfOfRequest, onBehalfOfRequest.requestAuthority());
+
+        AuthenticationResult res = acquireTokenByAuthorisationGrantSupplier.execute();
+
+        clientApplication.tokenCache.saveOnBehalfOfAuthenticationResult(cacheKey, res);
+
+        return res;
+    }
+
+    /**
+     * Results cached in memory are returned without switching threads
+     */
+    @Override
+    CompletableFuture<AuthenticationResult> executeAsync(ExecutorService executorService) {
+
+        String cacheKey = onBehalfOfRequest.getCacheKey();
+
+        if (!onBehalfOfRequest.parameters().skipCache()) {
+            AuthenticationResult res = clientApplication.tokenCache.getOnBehalfOfAuthenticationResult(cacheKey);
+            if (res != null) {
+                return CompletableFuture.completedFuture(res);
+            }
+        }
+
+        AcquireTokenByAuthorizationGrantSupplier acquireTokenByAuthorisationGrantSupplier =
+                new AcquireTokenByAuthorizationGrantSupplier(
+                        clientApplication, onBehalfOfRequest, onBehalfOfRequest.requestAuthority());
+
+        return acquireTokenByAuthorisationGrantSupplier.executeAsync(executorService).thenApply(res -> {
+            clientApplication.tokenCache.saveOnBehalfOfAuthenticationResult(cacheKey, res);
+            return res;
+        });
+    }
+}
@@ -23,6 +23,13 @@
 
 package com.microsoft.aad.msal4j;
 
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
 class AcquireTokenSilentSupplier extends AuthenticationResultSupplier {
 
     private SilentRequest silentRequest;
@@ -42,11 +49,7 @@ class AcquireTokenSilentSupplier extends AuthenticationResultSupplier {
                     getAuthorityWithPrefNetworkHost(silentRequest.requestAuthority().authority());
         }
 
-        AuthenticationResult res = clientApplication.tokenCache.getAuthenticationResult(
-                silentRequest.parameters().account(),
-                requestAuthority,
-                silentRequest.parameters().scopes(),
-                clientApplication.clientId());
+        AuthenticationResult res = getCachedResult(requestAuthority);
 
         if (!silentRequest.parameters().forceRefresh() && !StringHelper.isBlank(res.accessToken())) {
             return res;
@@ -55,16 +58,136 @@ class AcquireTokenSilentSupplier extends AuthenticationResultSupplier {
         if (StringHelper.isBlank(res.refreshToken())) {
             return null;
         } else {
+            try {
+                return createRefreshSupplier(res, requestAuthority).execute();
+            } catch (Exception ex) {
+                AuthenticationResult extendedLifetimeResult = getExtendedLifetimeResult(ex, requestAuthority);
+                if (extendedLifetimeResult == null) {
+                    throw ex;
+                }
+                return extendedLifetimeResult;
+            }
+        }
+    }
+
+    /**
+     * Cached tokens are returned on the calling thread, while the refresh request is sent
+     * without blocking, like other token requests
+     */
+    @Override
+    CompletableFuture<AuthenticationResult> executeAsync(ExecutorService executorService) {
+        CompletableFuture<Authority> authorityFuture =
+                silentRequest.requestAuthority().authorityType != AuthorityType.B2C ?
+                        getAuthorityWithPrefNetworkHostAsync(
+                                silentRequest.requestAuthority().authority(), executorService) :
+                        CompletableFuture.completedFuture(silentRequest.requestAuthority());
+
+        return authorityFuture.thenCompose(requestAuthority -> {
+            AuthenticationResult res = getCachedResult(requestAuthority);
+
+            if (!silentRequest.parameters().forceRefresh() && !StringHelper.isBlank(res.accessToken())) {
+                return CompletableFuture.completedFuture(res);
+            }
+
+            if (StringHelper.isBlank(res.refreshToken())) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return createRefreshSupplier(res, requestAuthority).executeAsync(executorService).
+                    handle((result, ex) -> {
+                        if (ex == null) {
+                            return result;
+                        }
+                        Throwable failure = ex instanceof CompletionException && ex.getCause() != null ?
+                                ex.getCause() :
+                                ex;
+                        AuthenticationResult extendedLifetimeResult = null;
+                        if (failure instanceof Exception) {
+                            try {
+                                extendedLifetimeResult =
+                                        getExtendedLifetimeResult((Exception) failure, requestAuthority);
+                            } catch (MalformedURLException urlException) {
+                                throw new CompletionException(urlException);
+                            }
+                        }
+                        if (extendedLifetimeResult == null) {
+                            throw new CompletionException(failure);
+                        }
+                        return extendedLifetimeResult;
+                    });
+        });
+    }
+
+    private AuthenticationResult getCachedResult(Authority requestAuthority) {
+        return clientApplication.tokenCache.getAuthenticationResult(
+                silentRequest.parameters().account(),
+                requestAuthority,
+                silentRequest.parameters().scopes(),
+                clientApplication.clientId(),
+                getEnvironmentAliases());
+    }
 
-            RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest(
-                    RefreshTokenParameters.builder(silentRequest.parameters().scopes(), res.refreshToken()).build(),
-                    silentRequest.application(),
-                    silentRequest.requestContext());
+    private AcquireTokenByAuthorizationGrantSupplier createRefreshSupplier(AuthenticationResult res,
+                                                                          Authority requestAuthority) {
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest(
+                RefreshTokenParameters.builder(silentRequest.parameters().scopes(), res.refreshToken()).build(),
+                silentRequest.application(),
+                silentRequest.requestContext());
 
-            AcquireTokenByAuthorizationGrantSupplier acquireTokenByAuthorisationGrantSupplier =
-                    new AcquireTokenByAuthorizationGrantSupplier(clientApplication, refreshTokenRequest, requestAuthority);
+        return new AcquireTokenByAuthorizationGrantSupplier(clientApplication, refreshTokenRequest, requestAuthority);
+    }
+
+    /**
+     * @return cached access token within its extended lifetime if the service failed to issue
+     * a new one due to an outage, or null. In the former case the refresh is retried in the background.
+     */
+    private AuthenticationResult getExtendedLifetimeResult(Exception ex, Authority requestAuthority)
+            throws MalformedURLException {
+        if (!clientApplication.useExtendedTokenLifetime() ||
+                silentRequest.parameters().forceRefresh() ||
+                !isServiceUnavailable(ex)) {
+            return null;
+        }
+
+        AuthenticationResult res = clientApplication.tokenCache.getExtendedLifetimeAuthenticationResult(
+                silentRequest.parameters().account(),
+                requestAuthority,
+                silentRequest.parameters().scopes(),
+                clientApplication.clientId(),
+                getEnvironmentAliases());
+
+        if (StringHelper.isBlank(res.accessToken())) {
+            return null;
+        }
+
+        clientApplication.log.warn(LogHelper.createMessage(
+                "Token endpoint is unavailable, returning access token within its extended lifetime",
+                silentRequest.headers().getHeaderCorrelationIdValue()));
+
+        // retry is forced, so it does not fall back to the cache, and is coalesced with other retries
+        SilentParameters parameters = SilentParameters.
+                builder(silentRequest.parameters().scopes(), silentRequest.parameters().account()).
+                authorityUrl(silentRequest.parameters().authorityUrl()).
+                forceRefresh(true).
+                build();
+
+        clientApplication.executeRequest(new SilentRequest(
+                parameters,
+                clientApplication,
+                clientApplication.createRequestContext(AcquireTokenPublicApi.ACQUIRE_TOKEN_SILENTLY)));
+
+        return res;
+    }
+
+    private Set<String> getEnvironmentAliases() {
+        return clientApplication.getServiceBundle().getInstanceDiscoveryCache().
+                getAliases(silentRequest.parameters().account().environment());
+    }
 
-            return acquireTokenByAuthorisationGrantSupplier.execute();
+    private static boolean isServiceUnavailable(Throwable ex) {
+        if (ex instanceof AuthenticationException) {
+            return ((AuthenticationException) ex).getErrorCode() == AuthenticationErrorCode.SERVICE_ERROR;
         }
+        return ex instanceof SocketTimeoutException;
     }
 }
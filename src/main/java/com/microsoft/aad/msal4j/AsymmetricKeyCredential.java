@@ -38,8 +38,12 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPrivateKey;
+import java.util.Collections;
 import java.util.Enumeration;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.util.Base64URL;
 import org.apache.commons.codec.binary.Base64;
 
 /**
@@ -49,6 +53,9 @@ public final class AsymmetricKeyCredential implements IClientCredential{
     public final static int MIN_KEY_SIZE_IN_BITS = 2048;
     private final PrivateKey key;
     private final X509Certificate publicCertificate;
+    private final String publicCertificateBase64;
+    private final String publicCertificateHash;
+    private final JWSHeader jwsHeader;
 
     /**
      * Constructor to create credential with client id, private key and public
@@ -92,6 +99,26 @@ public final class AsymmetricKeyCredential implements IClientCredential{
         }
 
         this.publicCertificate = publicCertificate;
+
+        // certificate is encoded and hashed once, assertions signed with the credential reuse the header
+        if (publicCertificate != null) {
+            try {
+                byte[] encodedCertificate = publicCertificate.getEncoded();
+                this.publicCertificateBase64 = Base64.encodeBase64String(encodedCertificate);
+                this.publicCertificateHash = Base64.encodeBase64String(getHash(encodedCertificate));
+            } catch (CertificateEncodingException | NoSuchAlgorithmException ex) {
+                throw new AuthenticationException(ex);
+            }
+            this.jwsHeader = new JWSHeader.Builder(JWSAlgorithm.RS256).
+                    x509CertChain(Collections.singletonList(
+                            new com.nimbusds.jose.util.Base64(publicCertificateBase64))).
+                    x509CertThumbprint(new Base64URL(publicCertificateHash)).
+                    build();
+        } else {
+            this.publicCertificateBase64 = null;
+            this.publicCertificateHash = null;
+            this.jwsHeader = null;
+        }
     }
 
     /**
@@ -103,8 +130,8 @@ public final class AsymmetricKeyCredential implements IClientCredential{
      */
     public String getPublicCertificateHash()
             throws CertificateEncodingException, NoSuchAlgorithmException {
-        return Base64.encodeBase64String(AsymmetricKeyCredential
-                .getHash(this.publicCertificate.getEncoded()));
+        validatePublicCertificate();
+        return publicCertificateHash;
     }
 
     /**
@@ -114,7 +141,25 @@ public final class AsymmetricKeyCredential implements IClientCredential{
      * @throws CertificateEncodingException if an encoding error occurs
      */
     public String getPublicCertificate() throws CertificateEncodingException {
-        return Base64.encodeBase64String(this.publicCertificate.getEncoded());
+        validatePublicCertificate();
+        return publicCertificateBase64;
+    }
+
+    /**
+     * Header of assertions signed with the credential, containing the public certificate
+     * and its thumbprint.
+     *
+     * @return JWS header
+     */
+    JWSHeader getJwsHeader() {
+        validatePublicCertificate();
+        return jwsHeader;
+    }
+
+    private void validatePublicCertificate() {
+        if (publicCertificate == null) {
+            throw new NullPointerException("publicCertificate");
+        }
     }
 
     /**
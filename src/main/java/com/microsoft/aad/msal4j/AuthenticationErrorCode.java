@@ -27,7 +27,8 @@ public enum AuthenticationErrorCode {
 
     UNKNOWN ("unknown"),
     AUTHORIZATION_PENDING ("authorization_pending"),
-    INTERACTION_REQUIRED ("interaction_required");
+    INTERACTION_REQUIRED ("interaction_required"),
+    SERVICE_ERROR ("service_error");
 
     private String errorCode;
 
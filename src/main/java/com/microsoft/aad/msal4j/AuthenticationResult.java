@@ -23,7 +23,6 @@
 
 package com.microsoft.aad.msal4j;
 
-import com.nimbusds.jwt.JWTParser;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -62,9 +61,7 @@ public final class AuthenticationResult implements Serializable {
             return null;
         }
         try {
-            String idTokenJson = JWTParser.parse(idToken).getParsedParts()[1].decodeToString();
-            return JsonHelper.convertJsonToObject(idTokenJson, IdToken.class);
-
+            return IdToken.parse(idToken);
         } catch (ParseException e) {
             e.printStackTrace();
         }
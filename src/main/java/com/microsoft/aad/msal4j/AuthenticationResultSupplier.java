@@ -31,7 +31,9 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
 abstract class AuthenticationResultSupplier implements Supplier<AuthenticationResult> {
@@ -59,8 +61,52 @@ abstract class AuthenticationResultSupplier implements Supplier<AuthenticationRe
         return Authority.createAuthority(updatedAuthorityUrl);
     }
 
+    /**
+     * Asynchronous version of {@link #getAuthorityWithPrefNetworkHost(String)}. Cached metadata
+     * is used on the calling thread, only discovery requests are run on the executor.
+     *
+     * @param executorService executor to run blocking work on, or null for the default one
+     */
+    CompletableFuture<Authority> getAuthorityWithPrefNetworkHostAsync(String authority,
+                                                                     ExecutorService executorService) {
+        try {
+            String host = new URL(authority).getAuthority();
+            if (clientApplication.getServiceBundle().getInstanceDiscoveryCache().get(host) != null) {
+                return CompletableFuture.completedFuture(getAuthorityWithPrefNetworkHost(authority));
+            }
+        } catch (Exception ex) {
+            CompletableFuture<Authority> future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+            return future;
+        }
+
+        return supplyAsync(() -> {
+            try {
+                return getAuthorityWithPrefNetworkHost(authority);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, executorService);
+    }
+
     abstract AuthenticationResult execute() throws Exception;
 
+    /**
+     * Asynchronous version of {@link #execute()}. By default {@link #execute()} is run on the
+     * executor, suppliers whose network calls can be made without blocking override it.
+     *
+     * @param executorService executor to run blocking work on, or null for the default one
+     */
+    CompletableFuture<AuthenticationResult> executeAsync(ExecutorService executorService) {
+        return supplyAsync(() -> {
+            try {
+                return execute();
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, executorService);
+    }
+
     @Override
     public AuthenticationResult get() {
         AuthenticationResult result;
@@ -75,20 +121,9 @@ abstract class AuthenticationResultSupplier implements Supplier<AuthenticationRe
                             true)) {
             try {
                 result = execute();
-                logResult(result, msalRequest.headers());
-
-                apiEvent.setWasSuccessful(true);
-                if (result.account() != null) {
-                    apiEvent.setTenantId(result.account().realm());
-                }
+                onSuccess(apiEvent, result);
             } catch(Exception ex) {
-                if (ex instanceof AuthenticationException) {
-                    apiEvent.setApiErrorCode(((AuthenticationException) ex).getErrorCode());
-                }
-                clientApplication.log.error(
-                        LogHelper.createMessage(
-                                "Execution of " + this.getClass() + " failed.",
-                                msalRequest.headers().getHeaderCorrelationIdValue()), ex);
+                onFailure(apiEvent, ex);
 
                 throw new CompletionException(ex);
             }
@@ -96,6 +131,77 @@ abstract class AuthenticationResultSupplier implements Supplier<AuthenticationRe
         return result;
     }
 
+    /**
+     * Asynchronous version of {@link #get()}
+     *
+     * @param executorService executor to run blocking work on, or null for the default one
+     */
+    CompletableFuture<AuthenticationResult> getAsync(ExecutorService executorService) {
+        ApiEvent apiEvent = initializeApiEvent(msalRequest);
+
+        TelemetryHelper telemetryHelper =
+                clientApplication.getServiceBundle().getTelemetryManager().createTelemetryHelper(
+                        msalRequest.requestContext().getTelemetryRequestId(),
+                        msalRequest.application().clientId(),
+                        apiEvent,
+                        true);
+
+        CompletableFuture<AuthenticationResult> future;
+        try {
+            future = executeAsync(executorService);
+        } catch (RuntimeException ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+
+        return future.handle((result, ex) -> {
+            try {
+                Throwable failure = ex;
+                if (failure == null) {
+                    try {
+                        onSuccess(apiEvent, result);
+                        return result;
+                    } catch (RuntimeException successHandlingException) {
+                        failure = successHandlingException;
+                    }
+                }
+                if (failure instanceof CompletionException && failure.getCause() != null) {
+                    failure = failure.getCause();
+                }
+                onFailure(apiEvent, failure);
+
+                throw new CompletionException(failure);
+            } finally {
+                telemetryHelper.close();
+            }
+        });
+    }
+
+    static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, ExecutorService executorService) {
+        return executorService != null ?
+                CompletableFuture.supplyAsync(supplier, executorService) :
+                CompletableFuture.supplyAsync(supplier);
+    }
+
+    private void onSuccess(ApiEvent apiEvent, AuthenticationResult result) {
+        logResult(result, msalRequest.headers());
+
+        apiEvent.setWasSuccessful(true);
+        if (result.account() != null) {
+            apiEvent.setTenantId(result.account().realm());
+        }
+    }
+
+    private void onFailure(ApiEvent apiEvent, Throwable ex) {
+        if (ex instanceof AuthenticationException) {
+            apiEvent.setApiErrorCode(((AuthenticationException) ex).getErrorCode());
+        }
+        clientApplication.log.error(
+                LogHelper.createMessage(
+                        "Execution of " + this.getClass() + " failed.",
+                        msalRequest.headers().getHeaderCorrelationIdValue()), ex);
+    }
+
     void logResult(AuthenticationResult result, ClientDataHttpHeaders headers)
     {
         if (!StringHelper.isBlank(result.accessToken())) {
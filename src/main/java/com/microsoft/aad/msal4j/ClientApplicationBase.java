@@ -29,14 +29,19 @@ import lombok.experimental.Accessors;
 import org.slf4j.Logger;
 
 import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
@@ -47,7 +52,7 @@ import static com.microsoft.aad.msal4j.ParameterValidationUtils.validateNotNull;
 /**
  * Abstract class containing common API methods and properties.
  */
-abstract class ClientApplicationBase {
+abstract class ClientApplicationBase implements AutoCloseable {
 
     public static String DEFAULT_AUTHORITY = "https://login.microsoftonline.com/common/";
     protected Logger log;
@@ -98,8 +103,27 @@ abstract class ClientApplicationBase {
     @Getter
     private boolean logPii;
 
+    /**
+     * A boolean value telling the application if access tokens within their extended lifetime
+     * can be returned by silent token requests when the service is unavailable
+     */
+    @Accessors(fluent = true)
+    @Getter
+    private boolean useExtendedTokenLifetime;
+
     private ServiceBundle serviceBundle;
 
+    private final ConcurrentHashMap<String, CompletableFuture<AuthenticationResult>> inflightRequests =
+            new ConcurrentHashMap<>();
+
+    private TokenRefreshScheduler tokenRefreshScheduler;
+
+    /**
+     * Executor created by the library for {@link Builder#useVirtualThreads(boolean)}, null when the
+     * application uses its own executor or the common ForkJoinPool
+     */
+    private ExecutorService ownedExecutorService;
+
     /**
      * Registered telemetry consumer that will receive telemetry events emited by the library.
      */
@@ -126,11 +150,62 @@ abstract class ClientApplicationBase {
         return this.serviceBundle.getSslSocketFactory();
     }
 
+    /**
+     * @return client authentication to be applied to token requests sent to the authority
+     */
+    ClientAuthentication getClientAuthentication(Authority requestAuthority) {
+        return clientAuthentication;
+    }
+
 
     @Accessors(fluent = true)
     @Getter
     protected TokenCache tokenCache;
 
+    /**
+     * Returns instance discovery metadata cached by the library, which can be persisted and passed to
+     * {@link Builder#instanceDiscoveryMetadata(String)} to avoid instance discovery requests
+     * after restart of the application.
+     *
+     * @return JSON in the format of the response of the instance discovery endpoint
+     */
+    public String serializeInstanceDiscoveryMetadata() {
+        return serviceBundle.getInstanceDiscoveryCache().serialize();
+    }
+
+    /**
+     * Returns cache of instance discovery metadata used by the application, which exposes
+     * size and hit/miss metrics of the cache.
+     *
+     * @return instance discovery cache of the application
+     */
+    public InstanceDiscoveryCache instanceDiscoveryCache() {
+        return serviceBundle.getInstanceDiscoveryCache();
+    }
+
+    /**
+     * Releases resources owned by the application: stops background token refresh, threads
+     * started for requests when {@link Builder#useVirtualThreads(boolean)} is set and threads used for
+     * asynchronous HTTP requests, and deletes the token cache secrets file, if one is set.
+     * ExecutorService set by the developer is not shut down.
+     * The application can not be used after it is closed.
+     */
+    @Override
+    public void close() {
+        if (tokenRefreshScheduler != null) {
+            tokenRefreshScheduler.shutdown();
+        }
+        if (ownedExecutorService != null) {
+            ownedExecutorService.shutdown();
+        }
+        serviceBundle.getHttpTransport().shutdown();
+        try {
+            tokenCache.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to close token cache secrets file", ex);
+        }
+    }
+
     /**
      * Acquires security token from the authority using an authorization code
      * previously received.
@@ -182,14 +257,54 @@ abstract class ClientApplicationBase {
     CompletableFuture<AuthenticationResult> executeRequest(
             MsalRequest msalRequest) {
 
-        AuthenticationResultSupplier supplier = getAuthenticationResultSupplier(msalRequest);
+        String deduplicationKey = msalRequest.deduplicationKey();
+        if (deduplicationKey == null) {
+            return supplyAsync(msalRequest);
+        }
 
-        ExecutorService executorService = serviceBundle.getExecutorService();
-        CompletableFuture<AuthenticationResult> future = executorService != null ?
-                CompletableFuture.supplyAsync(supplier, executorService) :
-                CompletableFuture.supplyAsync(supplier);
+        // concurrent equivalent requests share single execution,
+        // each caller gets its own dependent future so cancelling it does not affect others
+        CompletableFuture<AuthenticationResult> sharedFuture = new CompletableFuture<>();
+        CompletableFuture<AuthenticationResult> inflightFuture =
+                inflightRequests.putIfAbsent(deduplicationKey, sharedFuture);
+        if (inflightFuture != null) {
+            return inflightFuture.thenApply(result -> result);
+        }
 
-        return future;
+        try {
+            supplyAsync(msalRequest).whenComplete((result, ex) -> {
+                inflightRequests.remove(deduplicationKey, sharedFuture);
+                if (ex != null) {
+                    sharedFuture.completeExceptionally(ex);
+                    return;
+                }
+                try {
+                    if (tokenRefreshScheduler != null) {
+                        tokenRefreshScheduler.onTokenServed(msalRequest, result);
+                    }
+                } catch (RuntimeException schedulingException) {
+                    log.warn(LogHelper.createMessage(
+                            "Failed to schedule background refresh of token: " +
+                                    LogHelper.getPiiScrubbedDetails(schedulingException),
+                            msalRequest.headers().getHeaderCorrelationIdValue()));
+                } finally {
+                    // callers coalesced onto this request are completed even if scheduling fails
+                    sharedFuture.complete(result);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inflightRequests.remove(deduplicationKey, sharedFuture);
+            throw ex;
+        }
+
+        return sharedFuture.thenApply(result -> result);
+    }
+
+    private CompletableFuture<AuthenticationResult> supplyAsync(MsalRequest msalRequest) {
+
+        AuthenticationResultSupplier supplier = getAuthenticationResultSupplier(msalRequest);
+
+        return supplier.getAsync(serviceBundle.getExecutorService());
     }
 
     /**
@@ -235,6 +350,38 @@ abstract class ClientApplicationBase {
     AuthenticationResult acquireTokenCommon(MsalRequest msalRequest, Authority requestAuthority)
             throws Exception {
 
+        TokenRequest request = createTokenRequest(msalRequest, requestAuthority);
+
+        AuthenticationResult result = request.executeOauthRequestAndProcessResponse();
+
+        saveTokens(request, result);
+
+        return result;
+    }
+
+    /**
+     * Asynchronous version of {@link #acquireTokenCommon(MsalRequest, Authority)}, which does not
+     * block the calling thread while waiting for response of the token endpoint
+     */
+    CompletableFuture<AuthenticationResult> acquireTokenCommonAsync(MsalRequest msalRequest,
+                                                                    Authority requestAuthority)
+            throws Exception {
+
+        TokenRequest request = createTokenRequest(msalRequest, requestAuthority);
+
+        return request.executeOauthRequestAndProcessResponseAsync().thenApply(result -> {
+            try {
+                saveTokens(request, result);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+            return result;
+        });
+    }
+
+    private TokenRequest createTokenRequest(MsalRequest msalRequest, Authority requestAuthority)
+            throws MalformedURLException {
+
         ClientDataHttpHeaders headers = msalRequest.headers();
 
         if (logPii) {
@@ -244,21 +391,19 @@ abstract class ClientApplicationBase {
         }
 
         URL url = new URL(requestAuthority.tokenEndpoint());
-        TokenRequest request = new TokenRequest(url, msalRequest, serviceBundle);
-
-        AuthenticationResult result = request.executeOauthRequestAndProcessResponse();
+        return new TokenRequest(url, msalRequest, serviceBundle);
+    }
 
+    private void saveTokens(TokenRequest request, AuthenticationResult result) throws Exception {
         if(authenticationAuthority.authorityType.equals(AuthorityType.B2C)){
             tokenCache.saveTokens(request, result, authenticationAuthority.host);
         } else {
             InstanceDiscoveryMetadataEntry instanceDiscoveryMetadata =
                     AadInstanceDiscovery.GetMetadataEntry
-                            (url, validateAuthority, msalRequest, serviceBundle);
+                            (request.getUrl(), validateAuthority, request.getMsalRequest(), serviceBundle);
 
             tokenCache.saveTokens(request, result, instanceDiscoveryMetadata.preferredCache);
         }
-
-        return result;
     }
 
     private AuthenticationResultSupplier getAuthenticationResultSupplier(MsalRequest msalRequest) {
@@ -270,6 +415,14 @@ abstract class ClientApplicationBase {
                     (DeviceCodeFlowRequest) msalRequest);
         } else if (msalRequest instanceof SilentRequest) {
             supplier = new AcquireTokenSilentSupplier(this, (SilentRequest) msalRequest);
+        } else if (msalRequest instanceof OnBehalfOfRequest) {
+            supplier = new AcquireTokenByOnBehalfOfSupplier(
+                    (ConfidentialClientApplication) this,
+                    (OnBehalfOfRequest) msalRequest);
+        } else if (msalRequest instanceof ClientCredentialRequest) {
+            supplier = new AcquireTokenByClientCredentialSupplier(
+                    (ConfidentialClientApplication) this,
+                    (ClientCredentialRequest) msalRequest);
         } else {
             supplier = new AcquireTokenByAuthorizationGrantSupplier(
                     this,
@@ -311,9 +464,18 @@ abstract class ClientApplicationBase {
         private ExecutorService executorService;
         private Proxy proxy;
         private SSLSocketFactory sslSocketFactory;
+        private int connectTimeout = PooledHttpTransport.DEFAULT_CONNECT_TIMEOUT_MS;
+        private int readTimeout = PooledHttpTransport.DEFAULT_READ_TIMEOUT_MS;
+        private int maxConnectionsPerHost = PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
         private Consumer<List<HashMap<String, String>>> telemetryConsumer;
         private Boolean onlySendFailureTelemetry = false;
         private ITokenCacheAccessAspect tokenCacheAccessAspect;
+        private boolean refreshAhead = false;
+        private boolean useVirtualThreads = false;
+        private boolean useExtendedTokenLifetime = false;
+        private String instanceDiscoveryMetadata;
+        private InstanceDiscoveryCache instanceDiscoveryCache;
+        private Path tokenCacheSecretsFile;
 
         /**
          * Constructor to create instance of Builder of client application
@@ -401,6 +563,21 @@ abstract class ClientApplicationBase {
             return self();
         }
 
+        /**
+         * Set a boolean value enabling execution of requests on virtual threads, when no
+         * ExecutorService is set. A new virtual thread is started for each request if the runtime
+         * supports virtual threads, otherwise requests are executed on a bounded pool of daemon
+         * platform threads owned by the client application. In both cases the requests do not run
+         * on the common ForkJoinPool. Only request setup, like token cache lookup, runs on these threads,
+         * HTTP requests are sent and their responses handled on the I/O threads of the connection pool
+         * of the client application. The threads are stopped when the client application is closed.
+         * The default value is false.
+         */
+        public T useVirtualThreads(boolean val) {
+            useVirtualThreads = val;
+            return self();
+        }
+
         /**
          * Sets Proxy configuration to be used by the client application for all network communication.
          * Default is null and system defined properties if any, would be used.
@@ -422,6 +599,47 @@ abstract class ClientApplicationBase {
             return self();
         }
 
+        /**
+         * Sets timeout in milliseconds used when opening connections to the identity provider.
+         * A value of zero is interpreted as an infinite timeout. The default value is 10 seconds.
+         */
+        public T connectTimeout(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("connectTimeout can not be negative");
+            }
+
+            connectTimeout = val;
+            return self();
+        }
+
+        /**
+         * Sets timeout in milliseconds used when reading responses of the identity provider.
+         * A value of zero is interpreted as an infinite timeout. The default value is 30 seconds.
+         */
+        public T readTimeout(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("readTimeout can not be negative");
+            }
+
+            readTimeout = val;
+            return self();
+        }
+
+        /**
+         * Sets maximum number of concurrent connections to a single host of the identity provider.
+         * Requests exceeding the limit wait for a connection for at most the connect timeout.
+         * Number of idle connections kept alive for reuse is governed by the http.maxConnections
+         * system property. The default value is 20.
+         */
+        public T maxConnectionsPerHost(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("maxConnectionsPerHost has to be positive");
+            }
+
+            maxConnectionsPerHost = val;
+            return self();
+        }
+
         public T telemetryConsumer(Consumer<List<HashMap<String, String>>> val) {
             validateNotNull("telemetryConsumer", val);
 
@@ -445,6 +663,69 @@ abstract class ClientApplicationBase {
             return self();
         }
 
+        /**
+         * Sets instance discovery metadata, in the format of the response of the instance discovery
+         * endpoint or as returned by {@link ClientApplicationBase#serializeInstanceDiscoveryMetadata()}.
+         * Authorities whose host is found in the metadata are used without instance discovery request.
+         */
+        public T instanceDiscoveryMetadata(String val) {
+            validateNotBlank("instanceDiscoveryMetadata", val);
+
+            instanceDiscoveryMetadata = val;
+            return self();
+        }
+
+        /**
+         * Sets cache of instance discovery metadata to be used by the application. The same cache
+         * can be passed to multiple client applications to share metadata of discovered authorities.
+         * If not set, each client application creates its own cache.
+         */
+        public T instanceDiscoveryCache(InstanceDiscoveryCache val) {
+            validateNotNull("instanceDiscoveryCache", val);
+
+            instanceDiscoveryCache = val;
+            return self();
+        }
+
+        /**
+         * Sets file in which secrets of cached tokens are kept, memory mapped, instead of heap.
+         * Intended for applications holding tokens of very many accounts, whose heap usage and
+         * garbage collection pauses would otherwise grow with the number of cached tokens.
+         * The file is not meant to persist the cache: it has to be empty or not exist, and it is
+         * deleted when the application is closed. As it holds plaintext secrets, it is made
+         * readable and writable only by its owner on POSIX file systems; on other file systems
+         * it should be placed in a directory other users can not access.
+         */
+        public T tokenCacheSecretsFile(Path val) {
+            validateNotNull("tokenCacheSecretsFile", val);
+
+            tokenCacheSecretsFile = val;
+            return self();
+        }
+
+        /**
+         * Set a boolean value enabling background refresh of access tokens returned by silent
+         * and client credential token requests. Tokens which keep being requested are refreshed
+         * shortly before they would be considered expired, so that callers are served from the cache.
+         * The default value is false.
+         */
+        public T refreshAhead(boolean val) {
+            refreshAhead = val;
+            return self();
+        }
+
+        /**
+         * Set a boolean value enabling the use of access tokens within their extended lifetime.
+         * When the token endpoint responds with a server error or times out while refreshing
+         * an expired access token, a silent token request returns the cached access token
+         * if it has not yet reached its extended expiration time, and retries the refresh
+         * in the background. The default value is false.
+         */
+        public T useExtendedTokenLifetime(boolean val) {
+            useExtendedTokenLifetime = val;
+            return self();
+        }
+
         private static Authority createDefaultAADAuthority() {
             Authority authority;
             try {
@@ -464,13 +745,41 @@ abstract class ClientApplicationBase {
         validateAuthority = builder.validateAuthority;
         correlationId = builder.correlationId;
         logPii = builder.logPii;
+        useExtendedTokenLifetime = builder.useExtendedTokenLifetime;
         telemetryConsumer = builder.telemetryConsumer;
+        if (builder.executorService == null && builder.useVirtualThreads) {
+            ownedExecutorService = ExecutorServiceFactory.createVirtualThreadPerTaskExecutor();
+        }
         serviceBundle = new ServiceBundle(
-                builder.executorService,
+                ownedExecutorService != null ? ownedExecutorService : builder.executorService,
                 builder.proxy,
                 builder.sslSocketFactory,
-                new TelemetryManager(telemetryConsumer, builder.onlySendFailureTelemetry));
+                new TelemetryManager(telemetryConsumer, builder.onlySendFailureTelemetry),
+                new PooledHttpTransport(
+                        builder.proxy,
+                        builder.sslSocketFactory,
+                        builder.connectTimeout,
+                        builder.readTimeout,
+                        builder.maxConnectionsPerHost),
+                builder.instanceDiscoveryCache != null ?
+                        builder.instanceDiscoveryCache :
+                        new InstanceDiscoveryCache());
         authenticationAuthority = builder.authenticationAuthority;
-        tokenCache = new TokenCache(builder.tokenCacheAccessAspect);
+        if (builder.tokenCacheSecretsFile != null) {
+            try {
+                tokenCache = new TokenCache(builder.tokenCacheAccessAspect,
+                        new MappedSecretStore(builder.tokenCacheSecretsFile));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to open token cache secrets file", ex);
+            }
+        } else {
+            tokenCache = new TokenCache(builder.tokenCacheAccessAspect);
+        }
+        if (builder.instanceDiscoveryMetadata != null) {
+            serviceBundle.getInstanceDiscoveryCache().deserializeAndLoad(builder.instanceDiscoveryMetadata);
+        }
+        if (builder.refreshAhead) {
+            tokenRefreshScheduler = new TokenRefreshScheduler(this);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.msal4j;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
+import com.nimbusds.oauth2.sdk.auth.PrivateKeyJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Provides client assertion signed with certificate of confidential client application.
+ * Signed assertion is reused by token requests and re-signed in background before it expires,
+ * so that no signing is done while sending token requests. Providers of rarely used assertions
+ * can instead re-sign on request, so that they do not occupy the shared background thread.
+ */
+class ClientAssertionProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientAssertionProvider.class);
+
+    /**
+     * How long before expiration of the assertion it is re-signed
+     */
+    static final long RESIGN_AHEAD_MS = TimeUnit.MINUTES.toMillis(2);
+
+    /**
+     * Delay before failed background re-signing is retried
+     */
+    static final long RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final ScheduledExecutorService scheduledExecutorService =
+            Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().
+                            setDaemon(true).
+                            setNameFormat("msal4j-client-assertion-%d").
+                            build());
+
+    private final Supplier<ClientAssertion> signer;
+    private final long lifetimeMs;
+    private final long resignAheadMs;
+    private final long minRemainingLifetimeMs;
+    private volatile SignedAssertion current;
+
+    private static class SignedAssertion {
+        private final ClientAssertion clientAssertion;
+        private final long expiresOnMs;
+        private volatile ClientAuthentication clientAuthentication;
+
+        SignedAssertion(ClientAssertion clientAssertion, long expiresOnMs) {
+            this.clientAssertion = clientAssertion;
+            this.expiresOnMs = expiresOnMs;
+        }
+    }
+
+    ClientAssertionProvider(String clientId, AsymmetricKeyCredential credential, String jwtAudience) {
+        this(clientId, credential, jwtAudience, true);
+    }
+
+    /**
+     * @param resignInBackground whether the assertion is re-signed in background, otherwise
+     *                           it is re-signed by the first request within {@link #RESIGN_AHEAD_MS}
+     *                           of its expiration
+     */
+    ClientAssertionProvider(String clientId, AsymmetricKeyCredential credential, String jwtAudience,
+                            boolean resignInBackground) {
+        this(() -> JwtHelper.buildJwt(clientId, credential, jwtAudience),
+                TimeUnit.SECONDS.toMillis(Constants.AAD_JWT_TOKEN_LIFETIME_SECONDS),
+                RESIGN_AHEAD_MS,
+                resignInBackground);
+    }
+
+    ClientAssertionProvider(Supplier<ClientAssertion> signer, long lifetimeMs, long resignAheadMs) {
+        this(signer, lifetimeMs, resignAheadMs, true);
+    }
+
+    ClientAssertionProvider(Supplier<ClientAssertion> signer, long lifetimeMs, long resignAheadMs,
+                            boolean resignInBackground) {
+        this.signer = signer;
+        this.lifetimeMs = lifetimeMs;
+        this.resignAheadMs = resignAheadMs;
+        // requests re-sign only if background re-signing did not keep up
+        this.minRemainingLifetimeMs = resignInBackground ? resignAheadMs / 2 : resignAheadMs;
+
+        current = sign();
+        if (resignInBackground) {
+            scheduleResign(new WeakReference<>(this), getResignDelayMs());
+        }
+    }
+
+    /**
+     * @return currently valid client assertion, signing new one only if the current one
+     * is about to expire
+     */
+    ClientAssertion getClientAssertion() {
+        return getCurrent().clientAssertion;
+    }
+
+    ClientAuthentication getClientAuthentication() {
+        SignedAssertion signedAssertion = getCurrent();
+        if (signedAssertion.clientAuthentication == null) {
+            signedAssertion.clientAuthentication =
+                    createClientAuthFromClientAssertion(signedAssertion.clientAssertion);
+        }
+        return signedAssertion.clientAuthentication;
+    }
+
+    private SignedAssertion getCurrent() {
+        SignedAssertion signedAssertion = current;
+        if (signedAssertion.expiresOnMs - System.currentTimeMillis() < minRemainingLifetimeMs) {
+            signedAssertion = resign(signedAssertion);
+        }
+        return signedAssertion;
+    }
+
+    private synchronized SignedAssertion resign(SignedAssertion expiring) {
+        if (current == expiring) {
+            current = sign();
+        }
+        return current;
+    }
+
+    private SignedAssertion sign() {
+        long expiresOnMs = System.currentTimeMillis() + lifetimeMs;
+        return new SignedAssertion(signer.get(), expiresOnMs);
+    }
+
+    private long getResignDelayMs() {
+        return Math.max(0, current.expiresOnMs - resignAheadMs - System.currentTimeMillis());
+    }
+
+    /**
+     * Scheduled task only weakly references the provider, so that re-signing stops
+     * once client application owning the provider is garbage collected
+     */
+    private static void scheduleResign(WeakReference<ClientAssertionProvider> providerRef, long delayMs) {
+        scheduledExecutorService.schedule(() -> {
+            ClientAssertionProvider provider = providerRef.get();
+            if (provider == null) {
+                return;
+            }
+
+            long nextDelayMs;
+            try {
+                provider.resign(provider.current);
+                nextDelayMs = provider.getResignDelayMs();
+            } catch (RuntimeException ex) {
+                log.warn("Background re-signing of client assertion failed, retrying in " +
+                        TimeUnit.MILLISECONDS.toSeconds(RETRY_DELAY_MS) + " seconds: " +
+                        LogHelper.getPiiScrubbedDetails(ex));
+                nextDelayMs = RETRY_DELAY_MS;
+            }
+            scheduleResign(providerRef, nextDelayMs);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    static ClientAuthentication createClientAuthFromClientAssertion(
+            final ClientAssertion clientAssertion) {
+        try {
+            final Map<String, List<String>> map = new HashMap<>();
+            map.put("client_assertion_type", Collections.singletonList(clientAssertion.getAssertionType()));
+            map.put("client_assertion", Collections.singletonList(clientAssertion.getAssertion()));
+            return PrivateKeyJWT.parse(map);
+        } catch (final ParseException e) {
+            throw new AuthenticationException(e);
+        }
+    }
+}
@@ -39,6 +39,24 @@ public class ClientCredentialParameters {
     @NonNull
     private Set<String> scopes;
 
+    /**
+     * Authority to be used for the request instead of the authority of the application,
+     * for example authority of a customer tenant. Takes precedence over {@link #tenant}.
+     */
+    private String authorityUrl;
+
+    /**
+     * Tenant to be used for the request instead of the tenant of the application authority.
+     * Supported only for AAD authorities.
+     */
+    private String tenant;
+
+    /**
+     * Indicates whether the token cache should be skipped and a new token requested from the authority.
+     * The default value is false.
+     */
+    private boolean skipCache;
+
     private static ClientCredentialParametersBuilder builder() {
 
         return new ClientCredentialParametersBuilder();
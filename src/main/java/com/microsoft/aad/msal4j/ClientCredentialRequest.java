@@ -24,15 +24,33 @@
 package com.microsoft.aad.msal4j;
 
 import com.nimbusds.oauth2.sdk.ClientCredentialsGrant;
+import lombok.Getter;
+import lombok.experimental.Accessors;
 
-import java.util.Set;
-
+@Accessors(fluent = true)
+@Getter
 class ClientCredentialRequest extends MsalRequest{
 
+    private ClientCredentialParameters parameters;
+
+    private Authority requestAuthority;
+
     ClientCredentialRequest(ClientCredentialParameters parameters,
                             ConfidentialClientApplication application,
                             RequestContext requestContext){
         super(application, createMsalGrant(parameters), requestContext );
+        this.parameters = parameters;
+        this.requestAuthority = createRequestAuthority(application, parameters.authorityUrl(), parameters.tenant());
+    }
+
+    @Override
+    String deduplicationKey() {
+        return String.join(Constants.CACHE_KEY_SEPARATOR,
+                AcquireTokenPublicApi.ACQUIRE_TOKEN_FOR_CLIENT.name(),
+                application().clientId(),
+                requestAuthority.authority().toLowerCase(),
+                normalizeScopes(parameters.scopes()),
+                Boolean.toString(parameters.skipCache()));
     }
 
     private static OAuthAuthorizationGrant createMsalGrant(ClientCredentialParameters parameters){
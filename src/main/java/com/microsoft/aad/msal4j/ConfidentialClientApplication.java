@@ -23,25 +23,38 @@
 
 package com.microsoft.aad.msal4j;
 
-import com.nimbusds.oauth2.sdk.ParseException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
 import com.nimbusds.oauth2.sdk.auth.ClientSecretPost;
-import com.nimbusds.oauth2.sdk.auth.PrivateKeyJWT;
 import com.nimbusds.oauth2.sdk.auth.Secret;
 import com.nimbusds.oauth2.sdk.id.ClientID;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.microsoft.aad.msal4j.ParameterValidationUtils.validateNotNull;
 
 public class ConfidentialClientApplication extends ClientApplicationBase {
 
+    /**
+     * Maximum number of tenants whose signed client assertions are kept
+     */
+    static final int MAX_TENANT_ASSERTION_PROVIDERS = 10000;
+
+    private AsymmetricKeyCredential asymmetricKeyCredential;
+    private ClientAssertionProvider clientAssertionProvider;
+
+    /**
+     * Providers of client assertions for requests sent to other authorities than the authority
+     * of the application, keyed by audience of the assertion. They re-sign on request instead of
+     * in background, as there can be many of them.
+     */
+    private Cache<String, ClientAssertionProvider> tenantAssertionProviders;
+
     /**
      * Acquires security token from the authority.
      *
@@ -104,26 +117,40 @@ public class ConfidentialClientApplication extends ClientApplicationBase {
                     new ClientID(clientId()),
                     new Secret(((ClientSecret) clientCredential).getClientSecret()));
         } else if (clientCredential instanceof AsymmetricKeyCredential) {
-            ClientAssertion clientAssertion = JwtHelper.buildJwt(
+            asymmetricKeyCredential = (AsymmetricKeyCredential) clientCredential;
+            clientAssertionProvider = new ClientAssertionProvider(
                     clientId(),
-                    (AsymmetricKeyCredential) clientCredential,
+                    asymmetricKeyCredential,
                     this.authenticationAuthority.selfSignedJwtAudience());
+            // assertions of tenants not requested for an hour are dropped
+            tenantAssertionProviders = CacheBuilder.newBuilder().
+                    maximumSize(MAX_TENANT_ASSERTION_PROVIDERS).
+                    expireAfterAccess(1, TimeUnit.HOURS).
+                    build();
 
-            clientAuthentication = createClientAuthFromClientAssertion(clientAssertion);
+            clientAuthentication = clientAssertionProvider.getClientAuthentication();
         } else {
             throw new IllegalArgumentException("Unsupported client credential");
         }
     }
 
-    private ClientAuthentication createClientAuthFromClientAssertion(
-            final ClientAssertion clientAssertion) {
+    @Override
+    ClientAuthentication getClientAuthentication(Authority requestAuthority) {
+        if (clientAssertionProvider == null) {
+            return clientAuthentication;
+        }
+
+        String audience = requestAuthority.selfSignedJwtAudience();
+        if (audience.equals(authenticationAuthority.selfSignedJwtAudience())) {
+            return clientAssertionProvider.getClientAuthentication();
+        }
+
         try {
-            final Map<String, List<String>> map = new HashMap<>();
-            map.put("client_assertion_type", Collections.singletonList(clientAssertion.getAssertionType()));
-            map.put("client_assertion", Collections.singletonList(clientAssertion.getAssertion()));
-            return PrivateKeyJWT.parse(map);
-        } catch (final ParseException e) {
-            throw new AuthenticationException(e);
+            return tenantAssertionProviders.get(audience, () ->
+                    new ClientAssertionProvider(clientId(), asymmetricKeyCredential, audience, false)).
+                    getClientAuthentication();
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            throw new AuthenticationException(ex.getCause());
         }
     }
 
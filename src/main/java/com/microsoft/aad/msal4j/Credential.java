@@ -44,4 +44,48 @@ class Credential {
 
     @SerializedName("secret")
     protected String secret;
+
+    // set when the secret is kept in a secret store instead of the secret field
+    private transient MappedSecretStore secretStore;
+
+    private transient long secretLocation;
+
+    String secret() {
+        return secretStore != null ? secretStore.read(secretLocation) : secret;
+    }
+
+    Credential secret(String secret) {
+        this.secret = secret;
+        this.secretStore = null;
+        return this;
+    }
+
+    boolean isSecretStored() {
+        return secretStore != null;
+    }
+
+    long secretLocation() {
+        return secretLocation;
+    }
+
+    void releaseSecret() {
+        if (secretStore != null) {
+            secretStore.release(secretLocation);
+        }
+    }
+
+    /**
+     * Writes the secret again to its store, which is used to compact the store
+     */
+    void rewriteSecret() {
+        secretLocation = secretStore.write(secretStore.read(secretLocation));
+    }
+
+    void moveSecretTo(MappedSecretStore store) {
+        if (secret != null) {
+            secretLocation = store.write(secret);
+            secretStore = store;
+            secret = null;
+        }
+    }
 }
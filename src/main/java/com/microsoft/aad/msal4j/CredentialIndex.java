@@ -0,0 +1,167 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Secondary index over credentials stored in {@link TokenCache}, keyed by home account id,
+ * then by (client id, realm) and then by environment.
+ * Lets silent lookups and operations on cache partitions avoid scanning every credential in the cache.
+ *
+ * Lookups are safe to run concurrently with updates. Updates of a given partition
+ * are expected to be serialized by the caller, {@link TokenCache} does it with
+ * per home account locks.
+ */
+class CredentialIndex<T extends Credential> {
+
+    private final Function<T, String> realmExtractor;
+
+    // home account id -> (client id, realm) -> environment -> cache key -> credential
+    private final Map<String, Map<String, Map<String, Map<String, T>>>> index = new ConcurrentHashMap<>();
+
+    CredentialIndex(Function<T, String> realmExtractor) {
+        this.realmExtractor = realmExtractor;
+    }
+
+    void add(String cacheKey, T credential) {
+        index.computeIfAbsent(getAccountKey(credential.homeAccountId()), k -> new ConcurrentHashMap<>()).
+                computeIfAbsent(getPartitionKey(credential), k -> new ConcurrentHashMap<>()).
+                computeIfAbsent(getEnvironmentKey(credential.environment()), k -> new ConcurrentHashMap<>()).
+                put(cacheKey, credential);
+    }
+
+    void remove(String cacheKey, T credential) {
+        String accountKey = getAccountKey(credential.homeAccountId());
+        Map<String, Map<String, Map<String, T>>> partitions = index.get(accountKey);
+        if (partitions == null) {
+            return;
+        }
+
+        String partitionKey = getPartitionKey(credential);
+        Map<String, Map<String, T>> environments = partitions.get(partitionKey);
+        if (environments == null) {
+            return;
+        }
+
+        String environmentKey = getEnvironmentKey(credential.environment());
+        Map<String, T> credentials = environments.get(environmentKey);
+        if (credentials == null) {
+            return;
+        }
+
+        credentials.remove(cacheKey);
+        if (credentials.isEmpty()) {
+            environments.remove(environmentKey);
+            if (environments.isEmpty()) {
+                partitions.remove(partitionKey);
+                if (partitions.isEmpty()) {
+                    index.remove(accountKey);
+                }
+            }
+        }
+    }
+
+    void rebuild(Map<String, T> credentials) {
+        index.clear();
+        for (Map.Entry<String, T> entry : credentials.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return credentials for given home account id, client id and realm, stored under
+     * any of the environment aliases
+     */
+    Collection<T> get(String homeAccountId, String clientId, String realm, Set<String> environmentAliases) {
+        Map<String, Map<String, Map<String, T>>> partitions = index.get(getAccountKey(homeAccountId));
+        if (partitions == null) {
+            return Collections.emptyList();
+        }
+        Map<String, Map<String, T>> environments = partitions.get(getPartitionKey(clientId, realm));
+        if (environments == null) {
+            return Collections.emptyList();
+        }
+
+        List<T> result = null;
+        for (String environment : environmentAliases) {
+            Map<String, T> credentials = environments.get(getEnvironmentKey(environment));
+            if (credentials != null) {
+                if (result == null) {
+                    result = new ArrayList<>(credentials.size());
+                }
+                result.addAll(credentials.values());
+            }
+        }
+        return result != null ? result : Collections.emptyList();
+    }
+
+    /**
+     * @return credentials for given home account id, by cache key
+     */
+    Map<String, T> get(String homeAccountId) {
+        Map<String, Map<String, Map<String, T>>> partitions = index.get(getAccountKey(homeAccountId));
+        if (partitions == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, T> result = new HashMap<>();
+        for (Map<String, Map<String, T>> environments : partitions.values()) {
+            for (Map<String, T> credentials : environments.values()) {
+                result.putAll(credentials);
+            }
+        }
+        return result;
+    }
+
+    private String getPartitionKey(T credential) {
+        return getPartitionKey(credential.clientId(), realmExtractor.apply(credential));
+    }
+
+    private static String getAccountKey(String homeAccountId) {
+        return nullToEmpty(homeAccountId);
+    }
+
+    private static String getPartitionKey(String clientId, String realm) {
+        return String.join(Constants.CACHE_KEY_SEPARATOR,
+                nullToEmpty(clientId),
+                nullToEmpty(realm));
+    }
+
+    private static String getEnvironmentKey(String environment) {
+        return nullToEmpty(environment).toLowerCase();
+    }
+
+    private static String nullToEmpty(String str) {
+        return str == null ? "" : str;
+    }
+}
@@ -24,14 +24,21 @@
 package com.microsoft.aad.msal4j;
 
 import com.google.common.base.Strings;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 class HttpHelper {
@@ -74,143 +81,108 @@ class HttpHelper {
                                          final Map<String, String> headers,
                                          final ServiceBundle serviceBundle,
                                          HttpEvent httpEvent) throws Exception {
-        final HttpsURLConnection conn = HttpHelper.openConnection(url, serviceBundle);
-        configureAdditionalHeaders(conn, headers);
+        HttpGet request = new HttpGet(url.toURI());
+        configureAdditionalHeaders(request, headers);
 
-        return getResponse(log, headers, conn, httpEvent);
+        return serviceBundle.getHttpTransport().execute(request,
+                response -> getResponse(log, headers, url, response, httpEvent));
     }
 
     private static String executeHttpPost(final Logger log, final URL url,
                                           String postData, final Map<String, String> headers,
                                           final ServiceBundle serviceBundle, HttpEvent httpEvent)
             throws Exception {
-        final HttpsURLConnection conn = HttpHelper.openConnection(url, serviceBundle);
-        configureAdditionalHeaders(conn, headers);
-        conn.setRequestMethod("POST");
-        conn.setDoOutput(true);
-
-        DataOutputStream wr = null;
-        try {
-            wr = new DataOutputStream(conn.getOutputStream());
-            wr.writeBytes(postData);
-            wr.flush();
-
-            return getResponse(log, headers, conn, httpEvent);
-        }
-        finally {
-            if (wr != null) {
-                wr.close();
-            }
-        }
+        HttpPost request = new HttpPost(url.toURI());
+        configureAdditionalHeaders(request, headers);
+        request.setEntity(new StringEntity(postData, ContentType.APPLICATION_FORM_URLENCODED));
+
+        return serviceBundle.getHttpTransport().execute(request,
+                response -> getResponse(log, headers, url, response, httpEvent));
     }
 
     private static String getResponse(Logger log,
                                       Map<String, String> headers,
-                                      HttpsURLConnection conn,
+                                      URL url,
+                                      HttpResponse httpResponse,
                                       HttpEvent httpEvent) throws IOException {
-        String response = readResponseFromConnection(conn, httpEvent);
+        String response = readResponse(httpResponse, url, httpEvent);
         if (headers != null) {
-            HttpHelper.verifyReturnedCorrelationId(log, conn, headers
+            HttpHelper.verifyReturnedCorrelationId(log, httpResponse, headers
                     .get(ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME));
         }
 
-        if(!Strings.isNullOrEmpty(conn.getHeaderField("User-Agent"))){
-            httpEvent.setUserAgent(conn.getHeaderField("User-Agent"));
+        if(!Strings.isNullOrEmpty(getHeader(httpResponse, "User-Agent"))){
+            httpEvent.setUserAgent(getHeader(httpResponse, "User-Agent"));
         }
-        setXmsClientTelemetryInfo(conn, httpEvent);
+        setXmsClientTelemetryInfo(httpResponse, httpEvent);
 
         return response;
     }
 
-    static HttpsURLConnection openConnection(final URL finalURL, final ServiceBundle serviceBundle)
-            throws IOException {
-        HttpsURLConnection connection;
-        if (serviceBundle.getProxy() != null) {
-            connection = (HttpsURLConnection) finalURL.openConnection(serviceBundle.getProxy());
-        }
-        else {
-            connection = (HttpsURLConnection) finalURL.openConnection();
-        }
-
-        if (serviceBundle.getSslSocketFactory() != null) {
-            connection.setSSLSocketFactory(serviceBundle.getSslSocketFactory());
-        }
-
-        return connection;
-    }
-
     static void configureAdditionalHeaders(
-            final HttpsURLConnection conn, final Map<String, String> headers) {
+            final HttpRequest request, final Map<String, String> headers) {
         if (headers != null) {
             for (final Map.Entry<String, String> entry : headers.entrySet()) {
-                conn.setRequestProperty(entry.getKey(), entry.getValue());
+                request.setHeader(entry.getKey(), entry.getValue());
             }
         }
     }
 
+    /**
+     * @return value of the first header with given name, or null if there is none
+     */
+    static String getHeader(final HttpResponse httpResponse, final String name) {
+        Header header = httpResponse.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
     static void verifyReturnedCorrelationId(Logger log,
-                                            HttpsURLConnection conn, String sentCorrelationId) {
-        if (StringHelper
-                .isBlank(conn
-                        .getHeaderField(ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME))
-                || !conn.getHeaderField(
-                ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME)
-                .equals(sentCorrelationId)) {
+                                            HttpResponse httpResponse, String sentCorrelationId) {
+        String returnedCorrelationId =
+                getHeader(httpResponse, ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME);
+        if (StringHelper.isBlank(returnedCorrelationId)
+                || !returnedCorrelationId.equals(sentCorrelationId)) {
 
             String msg = LogHelper.createMessage(
                     String.format(
                             "Sent (%s) Correlation Id is not same as received (%s).",
                             sentCorrelationId,
-                            conn.getHeaderField(ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME)),
+                            returnedCorrelationId),
                     sentCorrelationId);
             log.info(msg);
         }
     }
 
-    static String readResponseFromConnection(final HttpsURLConnection conn, HttpEvent httpEvent)
+    static String readResponse(final HttpResponse httpResponse, final URL url, HttpEvent httpEvent)
             throws AuthenticationException, IOException {
-        InputStream is = null;
-        try {
-            int responseCode = conn.getResponseCode();
-            httpEvent.setHttpResponseStatus(responseCode);
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                String msg = "Server returned HTTP response code: " +
-                        responseCode + " for URL : " + conn.getURL();
-                is = conn.getErrorStream();
-                if (is != null) {
-                    msg = msg + ", Error details : " + inputStreamToString(is);
-                }
-                httpEvent.setOauthErrorCode(AuthenticationErrorCode.UNKNOWN.toString());
-                throw new AuthenticationException(msg);
-            }
-
-            is = conn.getInputStream();
-            return inputStreamToString(is);
-        }
-        finally {
-            if(is != null){
-                is.close();
+        int responseCode = httpResponse.getStatusLine().getStatusCode();
+        httpEvent.setHttpResponseStatus(responseCode);
+        HttpEntity entity = httpResponse.getEntity();
+        if (responseCode != HttpStatus.SC_OK) {
+            String msg = "Server returned HTTP response code: " +
+                    responseCode + " for URL : " + url;
+            if (entity != null) {
+                msg = msg + ", Error details : " + EntityUtils.toString(entity, StandardCharsets.UTF_8);
             }
+            httpEvent.setOauthErrorCode(AuthenticationErrorCode.UNKNOWN.toString());
+            throw new AuthenticationException(msg);
         }
-    }
 
-    private static String inputStreamToString(java.io.InputStream is) {
-        java.util.Scanner s = new java.util.Scanner(is).useDelimiter("\\A");
-        return s.hasNext() ? s.next() : "";
+        return entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : "";
     }
 
-    private static void setXmsClientTelemetryInfo(final HttpsURLConnection conn, HttpEvent httpEvent){
-        if(!Strings.isNullOrEmpty(conn.getHeaderField("x-ms-request-id"))){
-            httpEvent.setRequestIdHeader(conn.getHeaderField("x-ms-request-id"));
+    private static void setXmsClientTelemetryInfo(final HttpResponse httpResponse, HttpEvent httpEvent){
+        if(!Strings.isNullOrEmpty(getHeader(httpResponse, "x-ms-request-id"))){
+            httpEvent.setRequestIdHeader(getHeader(httpResponse, "x-ms-request-id"));
         }
 
-        if(!Strings.isNullOrEmpty(conn.getHeaderField("x-ms-clitelem"))){
+        if(!Strings.isNullOrEmpty(getHeader(httpResponse, "x-ms-clitelem"))){
             XmsClientTelemetryInfo xmsClientTelemetryInfo =
                     XmsClientTelemetryInfo.parseXmsTelemetryInfo(
-                            conn.getHeaderField("x-ms-clitelem"));
+                            getHeader(httpResponse, "x-ms-clitelem"));
             if(xmsClientTelemetryInfo != null){
                 httpEvent.setXmsClientTelemetryInfo(xmsClientTelemetryInfo);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport used to send HTTP requests to the identity provider
+ */
+interface HttpTransport {
+
+    /**
+     * Sends the request and passes its response to the handler. The connection may be reused for
+     * subsequent requests once the handler returns, so the handler has to read the response content
+     * it needs before returning.
+     *
+     * @return value returned by the handler
+     */
+    <T> T execute(HttpUriRequest request, ResponseHandler<T> handler) throws IOException;
+
+    /**
+     * Asynchronous version of {@link #execute(HttpUriRequest, ResponseHandler)}. Calling thread is not
+     * blocked while waiting for a connection, or while the request is in progress.
+     *
+     * @return future completed with value returned by the handler
+     */
+    <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<T> handler);
+
+    /**
+     * Releases connections and threads of the transport. Requests sent afterwards fail.
+     */
+    void shutdown();
+}
@@ -23,10 +23,17 @@
 
 package com.microsoft.aad.msal4j;
 
+import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
 import com.nimbusds.jwt.JWTClaimsSet;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.Base64;
 
 class IdToken {
 
@@ -89,4 +96,67 @@ class IdToken {
 
         return idToken;
     }
+
+    /**
+     * Decodes payload of the ID token and reads claims of {@link IdToken} with streaming JSON parser.
+     * Signature of the token is not verified, as the token is received directly from the token endpoint.
+     */
+    static IdToken parse(final String idToken) throws ParseException {
+        int payloadStart = idToken.indexOf('.');
+        int payloadEnd = payloadStart < 0 ? -1 : idToken.indexOf('.', payloadStart + 1);
+        if (payloadEnd < 0) {
+            throw new ParseException("Invalid ID token: missing part delimiters", 0);
+        }
+
+        IdToken result = new IdToken();
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(idToken.substring(payloadStart + 1, payloadEnd));
+            try (JsonReader reader = new JsonReader(
+                    new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case ISSUER:
+                            result.issuer = TokenEndpointResponse.nextString(reader);
+                            break;
+                        case SUBJECT:
+                            result.subject = TokenEndpointResponse.nextString(reader);
+                            break;
+                        case AUDIENCE:
+                            result.audience = TokenEndpointResponse.nextString(reader);
+                            break;
+                        case EXPIRATION_TIME:
+                            result.expirationTime = TokenEndpointResponse.nextLong(reader);
+                            break;
+                        case "iat":
+                            result.issuedAt = TokenEndpointResponse.nextLong(reader);
+                            break;
+                        case NOT_BEFORE:
+                            result.notBefore = TokenEndpointResponse.nextLong(reader);
+                            break;
+                        case NAME:
+                            result.name = TokenEndpointResponse.nextString(reader);
+                            break;
+                        case PREFERRED_USERNAME:
+                            result.preferredUsername = TokenEndpointResponse.nextString(reader);
+                            break;
+                        case OBJECT_IDENTIFIER:
+                            result.objectIdentifier = TokenEndpointResponse.nextString(reader);
+                            break;
+                        case TENANT_IDENTIFIER:
+                            result.tenantIdentifier = TokenEndpointResponse.nextString(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+        } catch (IOException | IllegalArgumentException | IllegalStateException | JsonParseException ex) {
+            ParseException parseException = new ParseException("Invalid ID token: " + ex.getMessage(), 0);
+            parseException.initCause(ex);
+            throw parseException;
+        }
+        return result;
+    }
 }
@@ -0,0 +1,312 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of instance discovery metadata, keyed by authority host and its aliases.
+ * <p>
+ * Each client application has its own cache, unless the same instance is passed to several
+ * applications with {@link ClientApplicationBase.Builder#instanceDiscoveryCache(InstanceDiscoveryCache)}.
+ * <p>
+ * Concurrent discoveries for the same host are coalesced into a single request. Expired metadata
+ * is still returned, while it is refreshed in the background. Failed discoveries are remembered
+ * for a short time, so that callers fail fast instead of repeating the request. When the number
+ * of cached hosts exceeds the limit, least recently used ones are evicted.
+ */
+public class InstanceDiscoveryCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+    static final long DEFAULT_TTL_MS = TimeUnit.HOURS.toMillis(24);
+    static final long DEFAULT_NEGATIVE_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final long ttlMs;
+
+    private final Cache<String, CachedMetadata> entries;
+    private final Cache<String, Exception> failures;
+    private final ConcurrentHashMap<String, CompletableFuture<InstanceDiscoveryMetadataEntry>> inflightDiscoveries =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder discoveryCount = new LongAdder();
+    private final LongAdder discoveryFailureCount = new LongAdder();
+
+    /**
+     * Creates cache holding metadata of at most 1000 hosts, which is refreshed after 24 hours
+     */
+    public InstanceDiscoveryCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS, DEFAULT_NEGATIVE_TTL_MS);
+    }
+
+    /**
+     * @param maxEntries maximum number of hosts whose metadata is cached
+     * @param ttl time after which cached metadata is refreshed
+     * @param unit unit of ttl
+     */
+    public InstanceDiscoveryCache(int maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, unit.toMillis(ttl), DEFAULT_NEGATIVE_TTL_MS);
+    }
+
+    InstanceDiscoveryCache(int maxEntries, long ttlMs, long negativeTtlMs) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries has to be positive");
+        }
+        if (ttlMs < 0 || negativeTtlMs < 0) {
+            throw new IllegalArgumentException("ttl can not be negative");
+        }
+        this.ttlMs = ttlMs;
+        this.entries = CacheBuilder.newBuilder().
+                maximumSize(maxEntries).
+                recordStats().
+                build();
+        this.failures = CacheBuilder.newBuilder().
+                maximumSize(maxEntries).
+                expireAfterWrite(negativeTtlMs, TimeUnit.MILLISECONDS).
+                build();
+    }
+
+    @FunctionalInterface
+    interface Discovery {
+        /**
+         * Sends discovery request and stores its results in the cache
+         *
+         * @return discovered metadata of the host
+         */
+        InstanceDiscoveryMetadataEntry discover() throws Exception;
+    }
+
+    /**
+     * @return number of hosts whose metadata is cached
+     */
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of metadata lookups served from the cache, including expired metadata
+     */
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return number of metadata lookups which had to wait for instance discovery
+     */
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return number of instance discovery requests sent, including background refreshes
+     */
+    public long discoveryCount() {
+        return discoveryCount.sum();
+    }
+
+    /**
+     * @return number of failed instance discovery requests
+     */
+    public long discoveryFailureCount() {
+        return discoveryFailureCount.sum();
+    }
+
+    /**
+     * @return number of hosts evicted due to the size limit
+     */
+    public long evictionCount() {
+        return entries.stats().evictionCount();
+    }
+
+    /**
+     * @return cached metadata of the host, even if expired, or null
+     */
+    InstanceDiscoveryMetadataEntry get(String host) {
+        CachedMetadata cached = entries.getIfPresent(host);
+        return cached != null ? cached.entry : null;
+    }
+
+    /**
+     * @return aliases of the host, or the host alone if its metadata is not cached
+     */
+    Set<String> getAliases(String host) {
+        InstanceDiscoveryMetadataEntry entry = get(host);
+        return entry != null ? entry.getAliasesSet() : Collections.singleton(host);
+    }
+
+    void put(String host, InstanceDiscoveryMetadataEntry entry) {
+        entries.put(host, new CachedMetadata(entry, System.currentTimeMillis() + ttlMs));
+    }
+
+    void clear() {
+        entries.invalidateAll();
+        failures.invalidateAll();
+    }
+
+    /**
+     * @return JSON containing all cached metadata, in the format of instance discovery response
+     */
+    String serialize() {
+        Set<InstanceDiscoveryMetadataEntry> distinctEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+        entries.asMap().values().forEach(cached -> distinctEntries.add(cached.entry));
+
+        return JsonHelper.toJson(Collections.singletonMap("metadata", distinctEntries));
+    }
+
+    /**
+     * Adds metadata from JSON in the format of instance discovery response to the cache
+     */
+    void deserializeAndLoad(String data) {
+        InstanceDiscoveryResponse response = JsonHelper.convertJsonToObject(data, InstanceDiscoveryResponse.class);
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        for (InstanceDiscoveryMetadataEntry entry : response.getMetadata()) {
+            for (String alias : entry.getAliasesSet()) {
+                put(alias, entry);
+            }
+        }
+    }
+
+    /**
+     * Returns metadata of the host, running the discovery if there is none. If cached metadata
+     * is expired, it is returned and the discovery runs in the background on the executor.
+     * Metadata returned by the discovery itself is returned, as it may already be evicted
+     * from the cache. Failures are thrown to each caller as a new exception caused by the failure.
+     *
+     * @param discoveryKey key identifying equivalent discoveries, which are coalesced
+     */
+    InstanceDiscoveryMetadataEntry getOrDiscover(String host, String discoveryKey, Discovery discovery,
+                                                 Executor executor) throws Exception {
+        CachedMetadata cached = entries.getIfPresent(host);
+        if (cached != null) {
+            hitCount.increment();
+            if (cached.isExpired()) {
+                refreshInBackground(discoveryKey, discovery, executor);
+            }
+            return cached.entry;
+        }
+        missCount.increment();
+
+        Exception failure = failures.getIfPresent(discoveryKey);
+        if (failure != null) {
+            throw copyFailure(failure);
+        }
+
+        CompletableFuture<InstanceDiscoveryMetadataEntry> future = new CompletableFuture<>();
+        CompletableFuture<InstanceDiscoveryMetadataEntry> inflightDiscovery =
+                inflightDiscoveries.putIfAbsent(discoveryKey, future);
+        if (inflightDiscovery == null) {
+            runDiscovery(discoveryKey, discovery, future);
+            inflightDiscovery = future;
+        }
+
+        try {
+            return inflightDiscovery.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw copyFailure((Exception) ex.getCause());
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Failures are shared by all callers waiting for the discovery and remembered for a while,
+     * so each caller gets its own exception, keeping the error code or timeout type callers check
+     */
+    private static Exception copyFailure(Exception failure) {
+        Exception copy;
+        if (failure instanceof AuthenticationException) {
+            copy = new AuthenticationException(
+                    ((AuthenticationException) failure).getErrorCode(), failure.getMessage());
+        } else if (failure instanceof SocketTimeoutException) {
+            copy = new SocketTimeoutException(failure.getMessage());
+        } else {
+            return new AuthenticationException("Instance discovery failed: " + failure.getMessage(), failure);
+        }
+        copy.initCause(failure);
+        return copy;
+    }
+
+    private void refreshInBackground(String discoveryKey, Discovery discovery, Executor executor) {
+        if (failures.getIfPresent(discoveryKey) != null) {
+            return;
+        }
+
+        CompletableFuture<InstanceDiscoveryMetadataEntry> future = new CompletableFuture<>();
+        if (inflightDiscoveries.putIfAbsent(discoveryKey, future) == null) {
+            try {
+                executor.execute(() -> runDiscovery(discoveryKey, discovery, future));
+            } catch (RejectedExecutionException ex) {
+                inflightDiscoveries.remove(discoveryKey, future);
+                future.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private void runDiscovery(String discoveryKey, Discovery discovery,
+                              CompletableFuture<InstanceDiscoveryMetadataEntry> future) {
+        discoveryCount.increment();
+        try {
+            InstanceDiscoveryMetadataEntry entry = discovery.discover();
+            failures.invalidate(discoveryKey);
+            future.complete(entry);
+        } catch (Exception ex) {
+            discoveryFailureCount.increment();
+            failures.put(discoveryKey, ex);
+            future.completeExceptionally(ex);
+        } finally {
+            inflightDiscoveries.remove(discoveryKey, future);
+        }
+    }
+
+    private static class CachedMetadata {
+        private final InstanceDiscoveryMetadataEntry entry;
+        private final long expiresOnMs;
+
+        CachedMetadata(InstanceDiscoveryMetadataEntry entry, long expiresOnMs) {
+            this.entry = entry;
+            this.expiresOnMs = expiresOnMs;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresOnMs;
+        }
+    }
+}
@@ -23,16 +23,46 @@
 
 package com.microsoft.aad.msal4j;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**
  *
  */
 class JsonHelper {
+
+    /**
+     * Gson instances are thread safe and cache type adapters created by reflection,
+     * so a single instance is shared by all JSON conversions of the library
+     */
+    static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapterFactory(new StoredSecretAdapterFactory())
+            .create();
+
+    static {
+        // create type adapters of frequently converted types upfront
+        for (Class<?> type : new Class<?>[]{
+                TokenCache.class,
+                Account.class,
+                AccessTokenCacheEntity.class,
+                RefreshTokenCacheEntity.class,
+                IdTokenCacheEntity.class,
+                InstanceDiscoveryResponse.class,
+                UserDiscoveryResponse.class}) {
+            GSON.getAdapter(type);
+        }
+    }
+
     /**
      * 
      * @param json
@@ -41,7 +71,44 @@ class JsonHelper {
      */
     static <T> T convertJsonToObject(final String json, final Class<T> clazz) {
         final Reader reader = new StringReader(json);
-        final Gson gson = new GsonBuilder().create();
-        return gson.fromJson(reader, clazz);
+        return GSON.fromJson(reader, clazz);
+    }
+
+    static String toJson(final Object object) {
+        return GSON.toJson(object);
+    }
+
+    /**
+     * Writes secrets of credentials kept in {@link MappedSecretStore}, which are not held
+     * in the serialized secret field
+     */
+    private static class StoredSecretAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!Credential.class.isAssignableFrom(type.getRawType())) {
+                return null;
+            }
+            final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+            final TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+
+            return new TypeAdapter<T>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    if (value == null || !((Credential) value).isSecretStored()) {
+                        delegate.write(out, value);
+                        return;
+                    }
+                    JsonElement element = delegate.toJsonTree(value);
+                    element.getAsJsonObject().addProperty("secret", ((Credential) value).secret());
+                    elementAdapter.write(out, element);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    return delegate.read(in);
+                }
+            };
+        }
     }
 }
@@ -23,18 +23,11 @@
 
 package com.microsoft.aad.msal4j;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.List;
 import java.util.UUID;
 
-import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.JWSHeader;
-import com.nimbusds.jose.JWSHeader.Builder;
 import com.nimbusds.jose.crypto.RSASSASigner;
-import com.nimbusds.jose.util.Base64;
-import com.nimbusds.jose.util.Base64URL;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 
@@ -74,13 +67,7 @@ final class JwtHelper {
 
         SignedJWT jwt;
         try {
-            JWSHeader.Builder builder = new Builder(JWSAlgorithm.RS256);
-            List<Base64> certs = new ArrayList<Base64>();
-            certs.add(new Base64(credential.getPublicCertificate()));
-            builder.x509CertChain(certs);
-            builder.x509CertThumbprint(new Base64URL(credential
-                    .getPublicCertificateHash()));
-            jwt = new SignedJWT(builder.build(), claimsSet);
+            jwt = new SignedJWT(credential.getJwsHeader(), claimsSet);
             final RSASSASigner signer = new RSASSASigner(credential.getKey());
 
             jwt.sign(signer);
@@ -0,0 +1,258 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.msal4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append only store of token cache secrets in a memory mapped file. Secrets are the bulk of
+ * the size of cache entries, keeping them out of heap lets the cache hold many accounts without
+ * growing heap and garbage collection pauses; pages of the file are loaded by the operating
+ * system only when secrets on them are read. The file is split in chunks which are mapped
+ * as the store grows, each secret is written in a single chunk prefixed by its length.
+ * <p>
+ * The file holds plaintext secrets, so it is made accessible only by its owner on POSIX file systems,
+ * and an existing file is used only if it is empty. The file is deleted on {@link #close()}.
+ */
+class MappedSecretStore implements Closeable {
+
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_PERMISSIONS =
+            PosixFilePermissions.fromString("rw-------");
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final List<MappedByteBuffer> chunks = new CopyOnWriteArrayList<>();
+
+    // mapped chunks are accessed under the read lock, and unmapped under the write lock once closed,
+    // as accessing unmapped memory would crash the JVM
+    private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    // location where next secret is written
+    private long position;
+
+    // bytes of secrets which were replaced or removed
+    private long releasedBytes;
+
+    MappedSecretStore(Path file) throws IOException {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @throws FileAlreadyExistsException if the file exists and is not empty
+     */
+    MappedSecretStore(Path file, int chunkSize) throws IOException {
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.channel = openOwnerOnly(file);
+        if (channel.size() > 0) {
+            channel.close();
+            throw new FileAlreadyExistsException(file.toString(), null, "Secret store file is not empty");
+        }
+    }
+
+    private static FileChannel openOwnerOnly(Path file) throws IOException {
+        Set<StandardOpenOption> options =
+                EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            FileChannel channel = FileChannel.open(file, options,
+                    PosixFilePermissions.asFileAttribute(OWNER_ONLY_PERMISSIONS));
+            // permissions are only set when the file is created, an existing empty file may have other ones
+            Files.setPosixFilePermissions(file, OWNER_ONLY_PERMISSIONS);
+            return channel;
+        }
+
+        // best effort on other file systems, where access of other users depends on their ACLs
+        FileChannel channel = FileChannel.open(file, options);
+        File ioFile = file.toFile();
+        ioFile.setReadable(false, false);
+        ioFile.setReadable(true, true);
+        ioFile.setWritable(false, false);
+        ioFile.setWritable(true, true);
+        return channel;
+    }
+
+    /**
+     * @return location of the written secret, to be passed to {@link #read(long)}
+     */
+    synchronized long write(String secret) {
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        int recordSize = Integer.BYTES + bytes.length;
+        if (recordSize > chunkSize) {
+            throw new IllegalArgumentException("Secret is larger than chunk of secret store");
+        }
+
+        Lock lock = lockMapping();
+        try {
+            if (position % chunkSize + recordSize > chunkSize) {
+                position = (position / chunkSize + 1) * chunkSize;
+            }
+
+            long location = position;
+            ByteBuffer chunk = chunk((int) (location / chunkSize)).duplicate();
+            chunk.position((int) (location % chunkSize));
+            chunk.putInt(bytes.length);
+            chunk.put(bytes);
+
+            position += recordSize;
+            return location;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    String read(long location) {
+        Lock lock = lockMapping();
+        try {
+            ByteBuffer chunk = chunks.get((int) (location / chunkSize)).duplicate();
+            chunk.position((int) (location % chunkSize));
+            byte[] bytes = new byte[chunk.getInt()];
+            chunk.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks secret at given location as no longer used
+     */
+    synchronized void release(long location) {
+        Lock lock = lockMapping();
+        try {
+            ByteBuffer chunk = chunks.get((int) (location / chunkSize)).duplicate();
+            releasedBytes += Integer.BYTES + chunk.getInt((int) (location % chunkSize));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return acquired read lock of mapped chunks
+     * @throws IllegalStateException if the store is closed
+     */
+    private Lock lockMapping() {
+        Lock lock = mappingLock.readLock();
+        lock.lock();
+        if (closed) {
+            lock.unlock();
+            throw new IllegalStateException("Secret store is closed");
+        }
+        return lock;
+    }
+
+    /**
+     * @return true if more than half of the written data is released, and the released data
+     * takes at least a chunk
+     */
+    synchronized boolean shouldCompact() {
+        return releasedBytes >= chunkSize && releasedBytes > position / 2;
+    }
+
+    /**
+     * Discards all secrets, space of the file is reused by following writes. Secrets can still
+     * be read and written again in the order of their locations, which compacts the store.
+     */
+    synchronized void clear() {
+        position = 0;
+        releasedBytes = 0;
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        while (chunks.size() <= index) {
+            try {
+                chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * chunkSize, chunkSize));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to map secret store file", ex);
+            }
+        }
+        return chunks.get(index);
+    }
+
+    /**
+     * Unmaps chunks, closes and deletes the file. Secrets can not be read or written afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        Lock lock = mappingLock.writeLock();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            chunks.forEach(MappedSecretStore::unmap);
+            chunks.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Releases the mapping without waiting for garbage collection of the buffer. Java 8 has
+     * no public API for it, so if the cleaner of the buffer is not accessible, the mapping is
+     * released once the buffer is garbage collected.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // left to garbage collection
+        }
+    }
+}
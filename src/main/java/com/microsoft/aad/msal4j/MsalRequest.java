@@ -28,6 +28,11 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Set;
+import java.util.TreeSet;
+
 @Accessors(fluent = true)
 @Getter(AccessLevel.PACKAGE)
 @AllArgsConstructor
@@ -40,6 +45,53 @@ abstract class MsalRequest {
 
     @Getter(value = AccessLevel.PACKAGE, lazy = true)
     private final ClientDataHttpHeaders headers = new ClientDataHttpHeaders(requestContext.getCorrelationId());
+
+    /**
+     * Concurrent requests with the same key are executed once and share the result.
+     *
+     * @return key identifying equivalent requests, or null if request should always be executed
+     */
+    String deduplicationKey() {
+        return null;
+    }
+
+    /**
+     * @return authority the request is sent to, before instance discovery is applied
+     */
+    Authority requestAuthority() {
+        return application.authenticationAuthority;
+    }
+
+    /**
+     * Resolves authority overridden by parameters of a request, falling back to authority of the application
+     */
+    static Authority createRequestAuthority(ClientApplicationBase application, String authorityUrl, String tenant) {
+        try {
+            if (!StringHelper.isBlank(authorityUrl)) {
+                return Authority.createAuthority(new URL(authorityUrl));
+            }
+            if (!StringHelper.isBlank(tenant)) {
+                if (application.authenticationAuthority.authorityType != AuthorityType.AAD) {
+                    throw new IllegalArgumentException("Tenant can be overridden only for AAD authority");
+                }
+                return ((AADAuthority) application.authenticationAuthority).withTenant(tenant);
+            }
+        } catch (MalformedURLException ex) {
+            throw new AuthenticationException(ex);
+        }
+        return application.authenticationAuthority;
+    }
+
+    /**
+     * @return lower case scopes in natural order, joined by {@link Constants#SCOPES_SEPARATOR}
+     */
+    static String normalizeScopes(Set<String> scopes) {
+        Set<String> normalizedScopes = new TreeSet<>();
+        for (String scope : scopes) {
+            normalizedScopes.add(scope.toLowerCase());
+        }
+        return String.join(Constants.SCOPES_SEPARATOR, normalizedScopes);
+    }
 }
 
 
@@ -27,22 +27,24 @@ import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
 import com.nimbusds.oauth2.sdk.http.HTTPRequest;
 import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 class OAuthHttpRequest extends HTTPRequest {
 
@@ -64,110 +66,99 @@ class OAuthHttpRequest extends HTTPRequest {
     @Override
     public HTTPResponse send() throws IOException {
 
-        final HttpsURLConnection conn = HttpHelper.openConnection(this.getURL(),
-                this.serviceBundle);
-        this.configureHeaderAndExecuteOAuthCall(conn);
-        final String out = this.processAndReadResponse(conn);
-        HttpHelper.verifyReturnedCorrelationId(log, conn,
-                this.extraHeaderParams.get(ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME));
-        return createResponse(conn, out);
+        return this.serviceBundle.getHttpTransport().execute(this.toHttpRequest(), this::handleResponse);
     }
 
-    HTTPResponse createResponse(final HttpURLConnection conn, final String out)
-            throws IOException {
-        final HTTPResponse response = new HTTPResponse(conn.getResponseCode());
-        final String location = conn.getHeaderField("Location");
-        if (!StringHelper.isBlank(location)) {
-            try {
-                response.setLocation(new URI(location));
-            } catch (URISyntaxException e) {
-                throw new IOException("Invalid location URI " + location, e);
-            }
-        }
-
+    /**
+     * Sends the request without blocking the calling thread
+     */
+    CompletableFuture<HTTPResponse> sendAsync() {
+        HttpUriRequest httpRequest;
         try {
-            response.setContentType(conn.getContentType());
-        }
-        catch (final ParseException e) {
-            throw new IOException("Couldn't parse Content-Type header: "
-                    + e.getMessage(), e);
-        }
-
-        response.setCacheControl(conn.getHeaderField("Cache-Control"));
-        response.setPragma(conn.getHeaderField("Pragma"));
-        response.setWWWAuthenticate(conn.getHeaderField("WWW-Authenticate"));
-        if (!StringHelper.isBlank(out)) {
-            response.setContent(out);
+            httpRequest = this.toHttpRequest();
+        } catch (IOException ex) {
+            CompletableFuture<HTTPResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+            return future;
         }
-        return response;
+        return this.serviceBundle.getHttpTransport().executeAsync(httpRequest, this::handleResponse);
     }
 
-    void configureHeaderAndExecuteOAuthCall(final HttpsURLConnection conn)
-            throws IOException {
+    HttpUriRequest toHttpRequest() throws IOException {
+        final RequestBuilder builder;
+        try {
+            builder = RequestBuilder.create(this.getMethod().name()).setUri(this.getURL().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid request URI " + this.getURL(), e);
+        }
 
         if (this.getAuthorization() != null) {
-            conn.setRequestProperty("Authorization", this.getAuthorization());
+            builder.setHeader("Authorization", this.getAuthorization());
         }
 
-        Map<String, String> params = new java.util.HashMap<>();
-        if (this.extraHeaderParams != null && !this.extraHeaderParams.isEmpty()) {
-            for (java.util.Map.Entry<String, String> entry : this.extraHeaderParams
-                    .entrySet()) {
+        if (this.extraHeaderParams != null) {
+            for (Map.Entry<String, String> entry : this.extraHeaderParams.entrySet()) {
                 if (entry.getValue() == null || entry.getValue().isEmpty()) {
                     continue;
                 }
-                params.put(entry.getKey(), entry.getValue());
+                builder.setHeader(entry.getKey(), entry.getValue());
             }
         }
 
-        HttpHelper.configureAdditionalHeaders(conn, params);
-        conn.setDoOutput(true);
-        conn.setRequestProperty("Content-Type",
-                CommonContentTypes.APPLICATION_URLENCODED.toString());
-
         if (this.getQuery() != null) {
-            try(final OutputStreamWriter writer = new OutputStreamWriter(
-                    conn.getOutputStream())) {
-                writer.write(getQuery());
-                writer.flush();
-            }
+            builder.setEntity(new StringEntity(getQuery(),
+                    ContentType.parse(CommonContentTypes.APPLICATION_URLENCODED.toString())));
         }
+
+        return builder.build();
     }
 
-    String processAndReadResponse(final HttpURLConnection conn)
-            throws IOException {
-        Reader inReader;
-        final int responseCode = conn.getResponseCode();
-        if (responseCode == 200) {
-            inReader = new InputStreamReader(conn.getInputStream());
+    private HTTPResponse handleResponse(final HttpResponse httpResponse) throws IOException {
+        final String out = this.readResponse(httpResponse);
+        if (this.extraHeaderParams != null) {
+            HttpHelper.verifyReturnedCorrelationId(log, httpResponse,
+                    this.extraHeaderParams.get(ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME));
         }
-        else {
-            InputStream stream = conn.getErrorStream();
-            if (stream == null && responseCode == 404) {
-                stream = conn.getInputStream();
-            }
+        return createResponse(httpResponse, out);
+    }
 
-            if (stream == null) {
-                stream = conn.getInputStream();
+    HTTPResponse createResponse(final HttpResponse httpResponse, final String out)
+            throws IOException {
+        final HTTPResponse response = new HTTPResponse(httpResponse.getStatusLine().getStatusCode());
+        final String location = HttpHelper.getHeader(httpResponse, "Location");
+        if (!StringHelper.isBlank(location)) {
+            try {
+                response.setLocation(new URI(location));
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid location URI " + location, e);
             }
-
-            inReader = new InputStreamReader(stream);
         }
-        final BufferedReader reader = new BufferedReader(inReader);
-        final char[] buffer = new char[256];
-        final StringBuilder out = new StringBuilder();
+
         try {
-            for (;;) {
-                final int rsz = reader.read(buffer, 0, buffer.length);
-                if (rsz < 0) {
-                    break;
-                }
-                out.append(buffer, 0, rsz);
-            }
+            response.setContentType(HttpHelper.getHeader(httpResponse, "Content-Type"));
+        }
+        catch (final ParseException e) {
+            throw new IOException("Couldn't parse Content-Type header: "
+                    + e.getMessage(), e);
+        }
+
+        response.setCacheControl(HttpHelper.getHeader(httpResponse, "Cache-Control"));
+        response.setPragma(HttpHelper.getHeader(httpResponse, "Pragma"));
+        response.setWWWAuthenticate(HttpHelper.getHeader(httpResponse, "WWW-Authenticate"));
+        if (!StringHelper.isBlank(out)) {
+            response.setContent(out);
         }
-        finally {
-            reader.close();
+        return response;
+    }
+
+    /**
+     * @return content of the response, of error responses as well
+     */
+    String readResponse(final HttpResponse httpResponse) throws IOException {
+        final HttpEntity entity = httpResponse.getEntity();
+        if (entity == null) {
+            return "";
         }
-        return out.toString();
+        return EntityUtils.toString(entity, StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
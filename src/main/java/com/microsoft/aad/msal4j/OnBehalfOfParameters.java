@@ -42,6 +42,24 @@ public class OnBehalfOfParameters {
     @NonNull
     private UserAssertion userAssertion;
 
+    /**
+     * Authority to be used for the request instead of the authority of the application,
+     * for example authority of a customer tenant. Takes precedence over {@link #tenant}.
+     */
+    private String authorityUrl;
+
+    /**
+     * Tenant to be used for the request instead of the tenant of the application authority.
+     * Supported only for AAD authorities.
+     */
+    private String tenant;
+
+    /**
+     * Indicates whether the token cache should be skipped and a new token requested from the authority.
+     * The default value is false.
+     */
+    private boolean skipCache;
+
     private static OnBehalfOfParametersBuilder builder() {
 
         return new OnBehalfOfParametersBuilder();
@@ -38,10 +38,35 @@ import java.util.Map;
 @Getter
 class OnBehalfOfRequest extends MsalRequest {
 
+    private OnBehalfOfParameters parameters;
+
+    private Authority requestAuthority;
+
     OnBehalfOfRequest(OnBehalfOfParameters parameters,
                       ConfidentialClientApplication application,
                       RequestContext requestContext) {
         super(application, createAuthenticationGrant(parameters), requestContext);
+        this.parameters = parameters;
+        this.requestAuthority = createRequestAuthority(application, parameters.authorityUrl(), parameters.tenant());
+    }
+
+    /**
+     * @return key identifying tokens acquired for the same user assertion, scopes, client and authority
+     */
+    String getCacheKey() {
+        return String.join(Constants.CACHE_KEY_SEPARATOR,
+                application().clientId(),
+                requestAuthority.authority().toLowerCase(),
+                parameters.userAssertion().getAssertionHash(),
+                normalizeScopes(parameters.scopes()));
+    }
+
+    @Override
+    String deduplicationKey() {
+        return String.join(Constants.CACHE_KEY_SEPARATOR,
+                AcquireTokenPublicApi.ACQUIRE_TOKEN_ON_BEHALF_OF.name(),
+                getCacheKey(),
+                Boolean.toString(parameters.skipCache()));
     }
 
     private static OAuthAuthorizationGrant createAuthenticationGrant(OnBehalfOfParameters parameters) {
@@ -0,0 +1,330 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.HttpHost;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HttpTransport} based on Apache HttpClient with a pool of persistent connections.
+ * Connections to a host are kept open and reused by following requests, up to the per host limit,
+ * so that requests do not pay for TCP and TLS handshakes. All connections are created with the same
+ * {@link SSLSocketFactory}, so TLS sessions can be resumed when a new connection is needed.
+ * Connections are created with connect and read timeouts.
+ * <p>
+ * Asynchronous requests waiting for a connection are queued without occupying a thread, and are run
+ * on a bounded pool of I/O threads, sized for the per host limit of a few hosts. Requests to more hosts
+ * at once are queued until an I/O thread is available. Connections and threads are released by
+ * {@link #shutdown()}.
+ */
+class PooledHttpTransport implements HttpTransport {
+
+    static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    /**
+     * Number of hosts whose connections can be pooled at once, idle connections of other hosts
+     * are closed when connections to a new host are needed
+     */
+    static final int MAX_POOLED_HOSTS = 10;
+
+    /**
+     * Number of hosts, like token and federation endpoints, whose asynchronous requests can run at once
+     */
+    static final int IO_THREAD_HOSTS = 2;
+    private static final long IO_THREAD_KEEP_ALIVE_SEC = 60;
+
+    private final int connectTimeoutMs;
+    private final int maxConnectionsPerHost;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final RequestConfig requestConfig;
+    private final CloseableHttpClient httpClient;
+
+    private final ConcurrentHashMap<String, HostConnections> hostConnections = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor ioExecutor;
+
+    PooledHttpTransport(Proxy proxy, SSLSocketFactory sslSocketFactory) {
+        this(proxy, sslSocketFactory, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS,
+                DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    PooledHttpTransport(Proxy proxy, SSLSocketFactory sslSocketFactory, int connectTimeoutMs,
+                        int readTimeoutMs, int maxConnectionsPerHost) {
+        if (connectTimeoutMs < 0 || readTimeoutMs < 0) {
+            throw new IllegalArgumentException("timeout can not be negative");
+        }
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost has to be positive");
+        }
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+
+        this.connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create().
+                        register("http", createPlainSocketFactory(proxy)).
+                        register("https", createSslSocketFactory(proxy, sslSocketFactory != null ?
+                                sslSocketFactory :
+                                HttpsURLConnection.getDefaultSSLSocketFactory())).
+                        build());
+        this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        this.connectionManager.setMaxTotal(maxConnectionsPerHost * MAX_POOLED_HOSTS);
+
+        RequestConfig.Builder requestConfigBuilder = RequestConfig.custom().
+                setConnectTimeout(connectTimeoutMs).
+                setSocketTimeout(readTimeoutMs).
+                setConnectionRequestTimeout(connectTimeoutMs);
+        if (proxy != null && proxy.type() == Proxy.Type.HTTP) {
+            InetSocketAddress address = (InetSocketAddress) proxy.address();
+            requestConfigBuilder.setProxy(new HttpHost(address.getHostString(), address.getPort()));
+        }
+        this.requestConfig = requestConfigBuilder.build();
+
+        this.httpClient = HttpClients.custom().
+                setConnectionManager(connectionManager).
+                setDefaultRequestConfig(requestConfig).
+                disableAutomaticRetries().
+                disableCookieManagement().
+                build();
+
+        int ioThreads = maxConnectionsPerHost * IO_THREAD_HOSTS;
+        this.ioExecutor = new ThreadPoolExecutor(
+                ioThreads,
+                ioThreads,
+                IO_THREAD_KEEP_ALIVE_SEC,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().
+                        setNameFormat("msal4j-http-%d").
+                        setDaemon(true).
+                        build());
+        this.ioExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * SOCKS proxies are applied to the sockets, HTTP proxies are set in the request configuration
+     */
+    private static PlainConnectionSocketFactory createPlainSocketFactory(Proxy proxy) {
+        if (proxy == null || proxy.type() != Proxy.Type.SOCKS) {
+            return PlainConnectionSocketFactory.getSocketFactory();
+        }
+        return new PlainConnectionSocketFactory() {
+            @Override
+            public Socket createSocket(HttpContext context) {
+                return new Socket(proxy);
+            }
+        };
+    }
+
+    private static SSLConnectionSocketFactory createSslSocketFactory(Proxy proxy, SSLSocketFactory sslSocketFactory) {
+        if (proxy == null || proxy.type() != Proxy.Type.SOCKS) {
+            return new SSLConnectionSocketFactory(
+                    sslSocketFactory, SSLConnectionSocketFactory.getDefaultHostnameVerifier());
+        }
+        return new SSLConnectionSocketFactory(
+                sslSocketFactory, SSLConnectionSocketFactory.getDefaultHostnameVerifier()) {
+            @Override
+            public Socket createSocket(HttpContext context) {
+                return new Socket(proxy);
+            }
+        };
+    }
+
+    @Override
+    public <T> T execute(HttpUriRequest request, ResponseHandler<T> handler) throws IOException {
+        HostConnections connections = getHostConnections(request);
+
+        acquire(connections.permits, request);
+        try {
+            return send(request, handler);
+        } finally {
+            connections.release();
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<T> handler) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        HostConnections connections = getHostConnections(request);
+
+        connections.submit(() -> {
+            try {
+                ioExecutor.execute(() -> {
+                    T result = null;
+                    Throwable failure = null;
+                    try {
+                        result = send(request, handler);
+                    } catch (Throwable ex) {
+                        failure = ex;
+                    } finally {
+                        connections.release();
+                    }
+
+                    if (failure != null) {
+                        future.completeExceptionally(failure);
+                    } else {
+                        future.complete(result);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                connections.release();
+                future.completeExceptionally(ex);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Sends the request on a pooled connection, which is returned to the pool once the handler returns
+     */
+    <T> T send(HttpUriRequest request, ResponseHandler<T> handler) throws IOException {
+        try {
+            return httpClient.execute(request, handler);
+        } catch (ConnectTimeoutException ex) {
+            // callers tell timeouts apart by SocketTimeoutException
+            SocketTimeoutException timeoutException = new SocketTimeoutException(ex.getMessage());
+            timeoutException.initCause(ex);
+            throw timeoutException;
+        }
+    }
+
+    /**
+     * Closes pooled connections and stops I/O threads. Requests sent afterwards, and asynchronous
+     * requests which have not received their response yet, fail.
+     */
+    @Override
+    public void shutdown() {
+        ioExecutor.shutdown();
+        try {
+            httpClient.close();
+        } catch (IOException ex) {
+            // closing connections does not fail, the pool is shut down even if it does
+        }
+    }
+
+    int ioThreadLimit() {
+        return ioExecutor.getMaximumPoolSize();
+    }
+
+    PoolingHttpClientConnectionManager connectionManager() {
+        return connectionManager;
+    }
+
+    RequestConfig requestConfig() {
+        return requestConfig;
+    }
+
+    private HostConnections getHostConnections(HttpUriRequest request) {
+        return hostConnections.computeIfAbsent(
+                request.getURI().getAuthority().toLowerCase(),
+                host -> new HostConnections(maxConnectionsPerHost));
+    }
+
+    private void acquire(Semaphore permits, HttpUriRequest request) throws IOException {
+        try {
+            if (connectTimeoutMs == 0) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(connectTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SocketTimeoutException(
+                        "Timed out waiting for available connection to " + request.getURI().getAuthority());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    "Interrupted while waiting for available connection to " + request.getURI().getAuthority());
+        }
+    }
+
+    /**
+     * Connection permits of a single host, shared by synchronous requests, which block until
+     * a permit is available, and asynchronous requests, which are queued until then. Permits
+     * match the per host limit of the pool, so a request holding a permit gets a connection.
+     */
+    private static class HostConnections {
+
+        private final Semaphore permits;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        HostConnections(int maxConnections) {
+            this.permits = new Semaphore(maxConnections, true);
+        }
+
+        /**
+         * Runs the task once a permit is available. The task has to call {@link #release()}.
+         */
+        void submit(Runnable task) {
+            pending.add(task);
+            dispatchPending();
+        }
+
+        void release() {
+            permits.release();
+            dispatchPending();
+        }
+
+        private void dispatchPending() {
+            while (!pending.isEmpty() && permits.tryAcquire()) {
+                Runnable task = pending.poll();
+                if (task == null) {
+                    permits.release();
+                } else {
+                    task.run();
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@
 
 package com.microsoft.aad.msal4j;
 
+import java.util.Set;
 import java.util.concurrent.CompletionException;
 
 class RemoveAccountRunnable implements Runnable {
@@ -41,11 +42,11 @@ class RemoveAccountRunnable implements Runnable {
     @Override
     public void run() {
         try {
-            InstanceDiscoveryMetadataEntry instanceDiscoveryData =
-                    AadInstanceDiscovery.cache.get(clientApplication.authenticationAuthority.host());
+            Set<String> environmentAliases = clientApplication.getServiceBundle().getInstanceDiscoveryCache().
+                    getAliases(clientApplication.authenticationAuthority.host());
 
             clientApplication.tokenCache.removeAccount
-                    (clientApplication.clientId(), account, instanceDiscoveryData.getAliasesSet());
+                    (clientApplication.clientId(), account, environmentAliases);
 
         } catch (Exception ex) {
             clientApplication.log.error(
@@ -33,13 +33,24 @@ class ServiceBundle {
     private Proxy proxy;
     private SSLSocketFactory sslSocketFactory;
     private TelemetryManager telemetryManager;
+    private HttpTransport httpTransport;
+    private InstanceDiscoveryCache instanceDiscoveryCache;
 
     ServiceBundle(ExecutorService executorService, Proxy proxy, SSLSocketFactory sslSocketFactory,
                   TelemetryManager telemetryManager){
+        this(executorService, proxy, sslSocketFactory, telemetryManager,
+                new PooledHttpTransport(proxy, sslSocketFactory), new InstanceDiscoveryCache());
+    }
+
+    ServiceBundle(ExecutorService executorService, Proxy proxy, SSLSocketFactory sslSocketFactory,
+                  TelemetryManager telemetryManager, HttpTransport httpTransport,
+                  InstanceDiscoveryCache instanceDiscoveryCache){
         this.executorService = executorService;
         this.proxy = proxy;
         this.sslSocketFactory = sslSocketFactory;
         this.telemetryManager = telemetryManager;
+        this.httpTransport = httpTransport;
+        this.instanceDiscoveryCache = instanceDiscoveryCache;
     }
 
     public ExecutorService getExecutorService() {
@@ -57,4 +68,12 @@ class ServiceBundle {
     public TelemetryManager getTelemetryManager(){
         return telemetryManager;
     }
+
+    public HttpTransport getHttpTransport(){
+        return httpTransport;
+    }
+
+    public InstanceDiscoveryCache getInstanceDiscoveryCache(){
+        return instanceDiscoveryCache;
+    }
 }
\ No newline at end of file
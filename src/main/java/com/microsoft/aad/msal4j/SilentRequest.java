@@ -48,4 +48,15 @@ class SilentRequest extends MsalRequest {
                 application.authenticationAuthority :
                 Authority.createAuthority(new URL(parameters.authorityUrl()));
     }
+
+    @Override
+    String deduplicationKey() {
+        return String.join(Constants.CACHE_KEY_SEPARATOR,
+                AcquireTokenPublicApi.ACQUIRE_TOKEN_SILENTLY.name(),
+                application().clientId(),
+                requestAuthority.authority().toLowerCase(),
+                parameters.account().homeAccountId(),
+                normalizeScopes(parameters.scopes()),
+                Boolean.toString(parameters.forceRefresh()));
+    }
 }
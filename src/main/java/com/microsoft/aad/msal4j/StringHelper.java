@@ -23,6 +23,12 @@
 
 package com.microsoft.aad.msal4j;
 
+import org.apache.commons.codec.binary.Base64;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 /**
  *
  */
@@ -32,4 +38,13 @@ final class StringHelper {
         return str == null || str.trim().length() == 0;
     }
 
+    static String createBase64EncodedSha256Hash(String stringToHash) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(stringToHash.getBytes(StandardCharsets.UTF_8));
+            return Base64.encodeBase64URLSafeString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AuthenticationException(e);
+        }
+    }
 }
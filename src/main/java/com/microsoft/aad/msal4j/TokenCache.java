@@ -23,19 +23,40 @@
 
 package com.microsoft.aad.msal4j;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.annotations.SerializedName;
-import com.google.gson.internal.LinkedTreeMap;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * In memory token cache. Safe for concurrent use: credentials are guarded by read-write locks
+ * striped by home account id, so silent lookups for different accounts do not contend,
+ * and lookups for the same account only wait for writers of that account.
+ */
 public class TokenCache {
 
     public static final int MIN_ACCESS_TOKEN_EXPIRE_IN_SEC = 5*60;
 
+    private static final int LOCK_STRIPES = 64;
+
+    static final int MAX_ON_BEHALF_OF_CACHE_ENTRIES = 10000;
+
+    private static final int MAX_ON_BEHALF_OF_CACHE_ENTRY_LIFETIME_HOURS = 24;
+
     public TokenCache(ITokenCacheAccessAspect tokenCacheAccessAspect) {
         this();
         this.tokenCacheAccessAspect = tokenCacheAccessAspect;
@@ -44,95 +65,545 @@ public class TokenCache {
     public TokenCache() {
     }
 
-    @SerializedName("AccessToken")
-    Map<String, AccessTokenCacheEntity> accessTokens = new LinkedTreeMap<>();
+    /**
+     * Creates cache which keeps secrets of tokens in memory mapped file instead of heap,
+     * for applications holding tokens of very many accounts
+     *
+     * @param secretStore store of secrets of cached tokens
+     */
+    TokenCache(ITokenCacheAccessAspect tokenCacheAccessAspect, MappedSecretStore secretStore) {
+        this(tokenCacheAccessAspect);
+        this.secretStore = secretStore;
+    }
+
+    private static final String ACCESS_TOKEN_SECTION = "AccessToken";
+    private static final String REFRESH_TOKEN_SECTION = "RefreshToken";
+    private static final String ID_TOKEN_SECTION = "IdToken";
+    private static final String ACCOUNT_SECTION = "Account";
+
+    private static final String APP_PARTITION_KEY_SUFFIX = "_AppTokenCache";
+
+    private static final Set<String> CACHE_SECTIONS = new HashSet<>(Arrays.asList(
+            ACCESS_TOKEN_SECTION, REFRESH_TOKEN_SECTION, ID_TOKEN_SECTION, ACCOUNT_SECTION));
+
+    @SerializedName(ACCESS_TOKEN_SECTION)
+    Map<String, AccessTokenCacheEntity> accessTokens = new ConcurrentHashMap<>();
+
+    @SerializedName(REFRESH_TOKEN_SECTION)
+    Map<String, RefreshTokenCacheEntity> refreshTokens = new ConcurrentHashMap<>();
+
+    @SerializedName(ID_TOKEN_SECTION)
+    Map<String, IdTokenCacheEntity> idTokens = new ConcurrentHashMap<>();
 
-    @SerializedName("RefreshToken")
-    Map<String, RefreshTokenCacheEntity> refreshTokens = new LinkedTreeMap<>();
+    @SerializedName(ACCOUNT_SECTION)
+    Map<String, Account> accounts = new ConcurrentHashMap<>();
 
-    @SerializedName("IdToken")
-    Map<String, IdTokenCacheEntity> idTokens = new LinkedTreeMap<>();
+    private transient Striped<ReadWriteLock> locks = Striped.readWriteLock(LOCK_STRIPES);
 
-    @SerializedName("Account")
-    Map<String, Account> accounts = new LinkedTreeMap<>();
+    // In memory only, not serialized: results of on-behalf-of flow keyed by user assertion hash,
+    // bounded in size, expired results are dropped on access
+    private transient Cache<String, AuthenticationResult> onBehalfOfResults = CacheBuilder.newBuilder().
+            maximumSize(MAX_ON_BEHALF_OF_CACHE_ENTRIES).
+            expireAfterWrite(MAX_ON_BEHALF_OF_CACHE_ENTRY_LIFETIME_HOURS, TimeUnit.HOURS).
+            build();
+
+    private transient CredentialIndex<AccessTokenCacheEntity> accessTokensIndex =
+            new CredentialIndex<>(AccessTokenCacheEntity::realm);
+
+    private transient CredentialIndex<RefreshTokenCacheEntity> refreshTokensIndex =
+            new CredentialIndex<>(refreshToken -> "");
+
+    private transient CredentialIndex<IdTokenCacheEntity> idTokensIndex =
+            new CredentialIndex<>(IdTokenCacheEntity::getRealm);
 
     private ITokenCacheAccessAspect tokenCacheAccessAspect;
 
-    private String serializedCachedData;
+    // when set, secrets of cached credentials are kept in it instead of heap
+    private transient MappedSecretStore secretStore;
+
+    // top level members of loaded cache data not known to the library, written back on serialization
+    private transient JsonObject unknownMembers;
+
+    // keys of entries added, updated or removed since the cache was last serialized or loaded
+    private transient Set<String> changedAccessTokens = ConcurrentHashMap.newKeySet();
+    private transient Set<String> changedRefreshTokens = ConcurrentHashMap.newKeySet();
+    private transient Set<String> changedIdTokens = ConcurrentHashMap.newKeySet();
+    private transient Set<String> changedAccounts = ConcurrentHashMap.newKeySet();
 
     public void deserializeAndLoadToCache(String data) {
         if(StringHelper.isBlank(data)){
             return;
         }
-        serializedCachedData = data;
-        Gson gson = new GsonBuilder().create();
+        JsonObject document = new JsonParser().parse(data).getAsJsonObject();
+        TokenCache deserializedCache = JsonHelper.GSON.fromJson(document, TokenCache.class);
+        prepareDeserializedContent(deserializedCache);
+
+        JsonObject documentUnknownMembers = new JsonObject();
+        for (Map.Entry<String, JsonElement> member : document.entrySet()) {
+            if (!CACHE_SECTIONS.contains(member.getKey())) {
+                documentUnknownMembers.add(member.getKey(), member.getValue());
+            }
+        }
+
+        loadContent(deserializedCache.accessTokens, deserializedCache.refreshTokens, deserializedCache.idTokens,
+                deserializedCache.accounts, documentUnknownMembers.size() > 0 ? documentUnknownMembers : null);
+    }
+
+    /**
+     * Loads cache from data in compact binary format returned by {@link #serializeToBinary()},
+     * replacing current content. Binary format is faster to load and save and smaller than JSON,
+     * cache loaded from it can still be serialized to JSON with {@link #serialize()} and vice versa.
+     *
+     * @param data cache data in binary format
+     * @throws IllegalArgumentException if data is not valid binary cache data
+     */
+    public void deserializeAndLoadFromBinary(byte[] data) {
+        if (data == null || data.length == 0) {
+            return;
+        }
+        TokenCacheBinaryCodec.Content content = TokenCacheBinaryCodec.decode(data);
+
+        JsonObject documentUnknownMembers = content.unknownMembers != null ?
+                new JsonParser().parse(content.unknownMembers).getAsJsonObject() :
+                null;
 
-        TokenCache deserializedCache = gson.fromJson(data, TokenCache.class);
+        loadContent(content.accessTokens, content.refreshTokens, content.idTokens,
+                content.accounts, documentUnknownMembers);
+    }
 
-        this.accounts = deserializedCache.accounts;
-        this.accessTokens = deserializedCache.accessTokens;
-        this.refreshTokens = deserializedCache.refreshTokens;
-        this.idTokens = deserializedCache.idTokens;
+    private void loadContent(Map<String, AccessTokenCacheEntity> loadedAccessTokens,
+                             Map<String, RefreshTokenCacheEntity> loadedRefreshTokens,
+                             Map<String, IdTokenCacheEntity> loadedIdTokens,
+                             Map<String, Account> loadedAccounts,
+                             JsonObject loadedUnknownMembers) {
+        lockAll(ReadWriteLock::writeLock);
+        try {
+            unknownMembers = loadedUnknownMembers;
+
+            replaceContent(accounts, loadedAccounts);
+            replaceContent(accessTokens, loadedAccessTokens);
+            replaceContent(refreshTokens, loadedRefreshTokens);
+            replaceContent(idTokens, loadedIdTokens);
+
+            if (secretStore != null) {
+                // secrets of replaced content are no longer referenced
+                secretStore.clear();
+                accessTokens.values().forEach(credential -> credential.moveSecretTo(secretStore));
+                refreshTokens.values().forEach(credential -> credential.moveSecretTo(secretStore));
+                idTokens.values().forEach(credential -> credential.moveSecretTo(secretStore));
+            }
+
+            accessTokensIndex.rebuild(accessTokens);
+            refreshTokensIndex.rebuild(refreshTokens);
+            idTokensIndex.rebuild(idTokens);
+
+            clearChanges();
+        } finally {
+            unlockAll(ReadWriteLock::writeLock);
+        }
     }
 
     public String serialize() {
-        if(!StringHelper.isBlank(serializedCachedData)){
-            Object o = new Gson().fromJson(serializedCachedData, Object.class);
-            Map<String, Object> map = (Map<String, Object>)o;
+        lockAll(ReadWriteLock::readLock);
+        try {
+            JsonObject document = new JsonObject();
+            document.add(ACCESS_TOKEN_SECTION, JsonHelper.GSON.toJsonTree(accessTokens));
+            document.add(REFRESH_TOKEN_SECTION, JsonHelper.GSON.toJsonTree(refreshTokens));
+            document.add(ID_TOKEN_SECTION, JsonHelper.GSON.toJsonTree(idTokens));
+            document.add(ACCOUNT_SECTION, JsonHelper.GSON.toJsonTree(accounts));
+            if (unknownMembers != null) {
+                for (Map.Entry<String, JsonElement> member : unknownMembers.entrySet()) {
+                    document.add(member.getKey(), member.getValue());
+                }
+            }
+
+            clearChanges();
+            return JsonHelper.toJson(document);
+        } finally {
+            unlockAll(ReadWriteLock::readLock);
+        }
+    }
+
+    /**
+     * Serializes entries of one cache partition, in the same format as {@link #serialize()}.
+     * Used by persistence layers which store each partition separately, so that each cache
+     * access only reads and writes data of the partition it concerns.
+     *
+     * @param partitionKey key of the partition, as found in {@link TokenCacheAccessContext}
+     * @return serialized entries of the partition
+     */
+    public String serializePartition(String partitionKey) {
+        Lock lock = getPartitionLock(partitionKey).readLock();
+        lock.lock();
+        try {
+            Predicate<Credential> inPartition = credential -> partitionKey.equals(getPartitionKey(credential));
+
+            JsonObject document = new JsonObject();
+            document.add(ACCESS_TOKEN_SECTION, JsonHelper.GSON.toJsonTree(
+                    getPartitionCredentials(accessTokensIndex, partitionKey, inPartition)));
+            document.add(REFRESH_TOKEN_SECTION, JsonHelper.GSON.toJsonTree(
+                    getPartitionCredentials(refreshTokensIndex, partitionKey, inPartition)));
+            document.add(ID_TOKEN_SECTION, JsonHelper.GSON.toJsonTree(
+                    getPartitionCredentials(idTokensIndex, partitionKey, inPartition)));
+            document.add(ACCOUNT_SECTION, JsonHelper.GSON.toJsonTree(getPartitionAccounts(partitionKey)));
+
+            return JsonHelper.toJson(document);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces entries of one cache partition with entries serialized by {@link #serializePartition(String)},
+     * leaving other partitions unchanged. Entries of other partitions found in the data are ignored.
+     *
+     * @param partitionKey key of the partition, as found in {@link TokenCacheAccessContext}
+     * @param data serialized entries of the partition, the partition is emptied if blank
+     */
+    public void deserializeAndLoadPartition(String partitionKey, String data) {
+        TokenCache deserializedCache = StringHelper.isBlank(data) ?
+                new TokenCache() :
+                JsonHelper.GSON.fromJson(data, TokenCache.class);
+        prepareDeserializedContent(deserializedCache);
+
+        Lock lock = getPartitionLock(partitionKey).writeLock();
+        lock.lock();
+        try {
+            loadPartition(accessTokens, accessTokensIndex, changedAccessTokens,
+                    deserializedCache.accessTokens, partitionKey);
+            loadPartition(refreshTokens, refreshTokensIndex, changedRefreshTokens,
+                    deserializedCache.refreshTokens, partitionKey);
+            loadPartition(idTokens, idTokensIndex, changedIdTokens,
+                    deserializedCache.idTokens, partitionKey);
+
+            for (String key : getPartitionAccounts(partitionKey).keySet()) {
+                accounts.remove(key);
+                changedAccounts.remove(key);
+            }
+            if (deserializedCache.accounts != null) {
+                for (Map.Entry<String, Account> entry : deserializedCache.accounts.entrySet()) {
+                    if (partitionKey.equals(entry.getValue().homeAccountId)) {
+                        accounts.put(entry.getKey(), entry.getValue());
+                        changedAccounts.remove(entry.getKey());
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        compactSecretStoreIfNeeded();
+    }
+
+    private <T extends Credential> void loadPartition
+            (Map<String, T> credentials, CredentialIndex<T> index, Set<String> changedKeys,
+             Map<String, T> loadedCredentials, String partitionKey) {
+        Predicate<Credential> inPartition = credential -> partitionKey.equals(getPartitionKey(credential));
+
+        for (Map.Entry<String, T> entry : getPartitionCredentials(index, partitionKey, inPartition).entrySet()) {
+            credentials.remove(entry.getKey());
+            index.remove(entry.getKey(), entry.getValue());
+            entry.getValue().releaseSecret();
+            changedKeys.remove(entry.getKey());
+        }
+        if (loadedCredentials != null) {
+            for (Map.Entry<String, T> entry : loadedCredentials.entrySet()) {
+                if (inPartition.test(entry.getValue())) {
+                    putCredential(credentials, index, changedKeys, entry.getKey(), entry.getValue());
+                    changedKeys.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    private static <T extends Credential> Map<String, T> getPartitionCredentials
+            (CredentialIndex<T> index, String partitionKey, Predicate<Credential> inPartition) {
+        if (!isAppPartitionKey(partitionKey)) {
+            return index.get(partitionKey);
+        }
+        // application credentials have no home account id, they are partitioned by client id and tenant
+        Map<String, T> result = new HashMap<>(index.get(null));
+        result.values().removeIf(inPartition.negate());
+        return result;
+    }
+
+    private Map<String, Account> getPartitionAccounts(String partitionKey) {
+        Map<String, Account> result = new HashMap<>();
+        if (!isAppPartitionKey(partitionKey)) {
+            for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+                if (partitionKey.equals(entry.getValue().homeAccountId)) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    static String getAppPartitionKey(String clientId, String tenant) {
+        return clientId + "_" + tenant + APP_PARTITION_KEY_SUFFIX;
+    }
+
+    private static boolean isAppPartitionKey(String partitionKey) {
+        return partitionKey.endsWith(APP_PARTITION_KEY_SUFFIX);
+    }
+
+    private static String getPartitionKey(Credential credential) {
+        if (!StringHelper.isBlank(credential.homeAccountId())) {
+            return credential.homeAccountId();
+        }
+        String realm = credential instanceof AccessTokenCacheEntity ?
+                ((AccessTokenCacheEntity) credential).realm() :
+                null;
+        return getAppPartitionKey(credential.clientId(), realm);
+    }
+
+    private ReadWriteLock getPartitionLock(String partitionKey) {
+        return getLock(isAppPartitionKey(partitionKey) ? null : partitionKey);
+    }
+
+    /**
+     * Serializes cache in compact binary format, which can be loaded with
+     * {@link #deserializeAndLoadFromBinary(byte[])}
+     *
+     * @return cache data in binary format
+     */
+    public byte[] serializeToBinary() {
+        lockAll(ReadWriteLock::readLock);
+        try {
+            TokenCacheBinaryCodec.Content content = new TokenCacheBinaryCodec.Content();
+            content.accessTokens = accessTokens;
+            content.refreshTokens = refreshTokens;
+            content.idTokens = idTokens;
+            content.accounts = accounts;
+            content.unknownMembers = unknownMembers != null ? unknownMembers.toString() : null;
+
+            clearChanges();
+            return TokenCacheBinaryCodec.encode(content);
+        } finally {
+            unlockAll(ReadWriteLock::readLock);
+        }
+    }
+
+    /**
+     * Serializes only entries added, updated or removed since the cache was last serialized
+     * or loaded, so that persistence layers can update stored cache incrementally instead of
+     * rewriting it as a whole. Changes are returned as JSON merge patch (RFC 7396) of the document
+     * returned by {@link #serialize()}: changed entries have their current value, removed entries
+     * have null value.
+     *
+     * @return JSON merge patch, which is an empty object if the cache did not change
+     */
+    public String serializeChanges() {
+        lockAll(ReadWriteLock::readLock);
+        try {
+            JsonObject patch = new JsonObject();
+            addChanges(patch, ACCESS_TOKEN_SECTION, accessTokens, changedAccessTokens);
+            addChanges(patch, REFRESH_TOKEN_SECTION, refreshTokens, changedRefreshTokens);
+            addChanges(patch, ID_TOKEN_SECTION, idTokens, changedIdTokens);
+            addChanges(patch, ACCOUNT_SECTION, accounts, changedAccounts);
+
+            clearChanges();
+            // written with null values, which mark removed entries
+            return patch.toString();
+        } finally {
+            unlockAll(ReadWriteLock::readLock);
+        }
+    }
 
-            map.put("AccessToken", accessTokens);
-            map.put("RefreshToken", refreshTokens);
+    private static void addChanges(JsonObject patch, String section, Map<String, ?> entries, Set<String> changedKeys) {
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+        JsonObject sectionPatch = new JsonObject();
+        for (String key : changedKeys) {
+            Object entry = entries.get(key);
+            sectionPatch.add(key, entry != null ? JsonHelper.GSON.toJsonTree(entry) : JsonNull.INSTANCE);
+        }
+        patch.add(section, sectionPatch);
+    }
 
-            map.put("IdToken", idTokens);
-            map.put("Account", accounts);
+    private void clearChanges() {
+        changedAccessTokens.clear();
+        changedRefreshTokens.clear();
+        changedIdTokens.clear();
+        changedAccounts.clear();
+    }
 
-            return new GsonBuilder().create().toJson(map);
+    /**
+     * Drops entries with null value, which concurrent maps of the cache can not hold,
+     * and parses timestamps of access tokens
+     */
+    private static void prepareDeserializedContent(TokenCache deserializedCache) {
+        for (Map<String, ?> entries : Arrays.asList(deserializedCache.accessTokens,
+                deserializedCache.refreshTokens, deserializedCache.idTokens, deserializedCache.accounts)) {
+            if (entries != null) {
+                entries.values().removeIf(Objects::isNull);
+            }
         }
 
-        return new GsonBuilder().create().toJson(this);
+        if (deserializedCache.accessTokens != null) {
+            deserializedCache.accessTokens.values().forEach(AccessTokenCacheEntity::parseTimestamps);
+        }
+    }
+
+    private static <T> void replaceContent(Map<String, T> target, Map<String, T> source) {
+        target.clear();
+        if (source != null) {
+            target.putAll(source);
+        }
+    }
+
+    private ReadWriteLock getLock(String homeAccountId) {
+        return locks.get(homeAccountId == null ? "" : homeAccountId);
+    }
+
+    /**
+     * Acquires given lock of every stripe, always in the same order,
+     * for operations on the whole cache like loading or serialization
+     */
+    private void lockAll(Function<ReadWriteLock, Lock> lockType) {
+        for (int i = 0; i < locks.size(); i++) {
+            lockType.apply(locks.getAt(i)).lock();
+        }
+    }
+
+    private void unlockAll(Function<ReadWriteLock, Lock> lockType) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            lockType.apply(locks.getAt(i)).unlock();
+        }
     }
 
     protected void saveTokens
             (TokenRequest tokenRequest, AuthenticationResult authenticationResult, String environment){
 
+        String homeAccountId = authenticationResult.account() != null ?
+                authenticationResult.account().homeAccountId : null;
+        String partitionKey = !StringHelper.isBlank(homeAccountId) ?
+                homeAccountId :
+                getAppPartitionKey(tokenRequest.getMsalRequest().application().clientId(),
+                        tokenRequest.getMsalRequest().requestAuthority().tenant());
+
         if(tokenCacheAccessAspect != null){
             TokenCacheAccessContext context = TokenCacheAccessContext.builder().
                     clientId(tokenRequest.getMsalRequest().application().clientId()).
                     tokenCache(this).
+                    partitionKey(partitionKey).
                     build();
             tokenCacheAccessAspect.beforeCacheAccess(context);
         }
 
-        if(!StringHelper.isBlank(authenticationResult.accessToken())){
-            AccessTokenCacheEntity atEntity = createAccessTokenCacheEntity
-                    (tokenRequest, authenticationResult, environment);
-            accessTokens.put(atEntity.getKey(), atEntity);
-        }
-        if(!StringHelper.isBlank(authenticationResult.refreshToken())){
-            RefreshTokenCacheEntity rtEntity = createRefreshTokenCacheEntity
-                    (tokenRequest, authenticationResult, environment);
-            refreshTokens.put(rtEntity.getKey(), rtEntity);
-        }
-        if(!StringHelper.isBlank(authenticationResult.idToken())){
-            IdTokenCacheEntity idTokenEntity = createIdTokenCacheEntity
-                    (tokenRequest, authenticationResult, environment);
-            idTokens.put(idTokenEntity.getKey(), idTokenEntity);
-
-            Account account = authenticationResult.account();
-            account.environment(environment);
-            accounts.put(account.getKey(), account);
+        boolean cacheChanged = false;
+        Lock lock = getLock(homeAccountId).writeLock();
+        lock.lock();
+        try {
+            if (!StringHelper.isBlank(authenticationResult.accessToken())) {
+                AccessTokenCacheEntity atEntity = createAccessTokenCacheEntity
+                        (tokenRequest, authenticationResult, environment);
+                putCredential(accessTokens, accessTokensIndex, changedAccessTokens, atEntity.getKey(), atEntity);
+                cacheChanged = true;
+            }
+            if (!StringHelper.isBlank(authenticationResult.refreshToken())) {
+                RefreshTokenCacheEntity rtEntity = createRefreshTokenCacheEntity
+                        (tokenRequest, authenticationResult, environment);
+                putCredential(refreshTokens, refreshTokensIndex, changedRefreshTokens, rtEntity.getKey(), rtEntity);
+                cacheChanged = true;
+            }
+            if (!StringHelper.isBlank(authenticationResult.idToken())) {
+                IdTokenCacheEntity idTokenEntity = createIdTokenCacheEntity
+                        (tokenRequest, authenticationResult, environment);
+                putCredential(idTokens, idTokensIndex, changedIdTokens, idTokenEntity.getKey(), idTokenEntity);
+
+                Account account = authenticationResult.account();
+                account.environment(environment);
+                accounts.put(account.getKey(), account);
+                changedAccounts.add(account.getKey());
+                cacheChanged = true;
+            }
+        } finally {
+            lock.unlock();
         }
+        compactSecretStoreIfNeeded();
 
         if(tokenCacheAccessAspect != null){
             TokenCacheAccessContext context = TokenCacheAccessContext.builder().
                     clientId(tokenRequest.getMsalRequest().application().clientId()).
                     tokenCache(this).
-                    isCacheChanged(true).
+                    partitionKey(partitionKey).
+                    isCacheChanged(cacheChanged).
                     build();
             tokenCacheAccessAspect.afterCacheAccess(context);
         }
     }
 
+    private void compactSecretStoreIfNeeded() {
+        if (secretStore == null || !secretStore.shouldCompact()) {
+            return;
+        }
+        lockAll(ReadWriteLock::writeLock);
+        try {
+            if (!secretStore.shouldCompact()) {
+                return;
+            }
+            List<Credential> storedCredentials = new ArrayList<>();
+            storedCredentials.addAll(accessTokens.values());
+            storedCredentials.addAll(refreshTokens.values());
+            storedCredentials.addAll(idTokens.values());
+            storedCredentials.removeIf(credential -> !credential.isSecretStored());
+            // written in order of locations, so that no secret overwrites one not yet rewritten
+            storedCredentials.sort(Comparator.comparingLong(Credential::secretLocation));
+
+            secretStore.clear();
+            storedCredentials.forEach(Credential::rewriteSecret);
+        } finally {
+            unlockAll(ReadWriteLock::writeLock);
+        }
+    }
+
+    /**
+     * Closes store of secrets of cached tokens, if the cache has one. Cached tokens
+     * can not be read afterwards.
+     */
+    void close() throws IOException {
+        if (secretStore != null) {
+            secretStore.close();
+        }
+    }
+
+    private <T extends Credential> void putCredential
+            (Map<String, T> credentials, CredentialIndex<T> index, Set<String> changedKeys, String key,
+             T credential) {
+        if (secretStore != null) {
+            credential.moveSecretTo(secretStore);
+        }
+        T previous = credentials.put(key, credential);
+        changedKeys.add(key);
+        if (previous != null) {
+            index.remove(key, previous);
+            previous.releaseSecret();
+        }
+        index.add(key, credential);
+    }
+
+    /**
+     * @return number of removed credentials
+     */
+    private <T extends Credential> int removeCredentials
+            (Map<String, T> credentials, CredentialIndex<T> index, Set<String> changedKeys,
+             Predicate<? super T> predicate) {
+        int removedCount = 0;
+        Iterator<Map.Entry<String, T>> iterator = credentials.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, T> entry = iterator.next();
+            if (predicate.test(entry.getValue())) {
+                index.remove(entry.getKey(), entry.getValue());
+                entry.getValue().releaseSecret();
+                iterator.remove();
+                changedKeys.add(entry.getKey());
+                removedCount++;
+            }
+        }
+        return removedCount;
+    }
+
     static RefreshTokenCacheEntity createRefreshTokenCacheEntity(TokenRequest tokenRequest,
                                                                  AuthenticationResult authenticationResult,
                                                                  String environmentAlias) {
@@ -166,6 +637,9 @@ public class TokenCache {
         IdToken idTokenObj = authenticationResult.idTokenObject();
         if (idTokenObj != null) {
             at.realm(idTokenObj.tenantIdentifier);
+        } else if (authenticationResult.account() == null) {
+            // app only tokens have no id token, they are looked up by tenant of the authority
+            at.realm(tokenRequest.getMsalRequest().requestAuthority().tenant());
         }
 
         String scopes = !StringHelper.isBlank(authenticationResult.scopes()) ? authenticationResult.scopes() :
@@ -204,6 +678,9 @@ public class TokenCache {
     }
 
     /**
+     * Accounts are read without locking, result reflects the cache state at some point
+     * during or since the call
+     *
      * @return Collection of accounts from cache_data which can be used for silent acquire token call
      */
     protected Collection<Account> getAccounts(String clientId, Set<String> environmentAliases) {
@@ -218,11 +695,8 @@ public class TokenCache {
 
         Collection<Account> result = accounts.values().stream().filter
                 (account -> environmentAliases.contains(account.environment) &&
-                        refreshTokens.values().stream().anyMatch
-                        (refreshToken -> refreshToken.homeAccountId.equals(account.homeAccountId) &&
-                                refreshToken.environment.equals(account.environment) &&
-                                refreshToken.clientId.equals(clientId)
-                        )
+                        !refreshTokensIndex.get(account.homeAccountId, clientId, "",
+                                Collections.singleton(account.environment)).isEmpty()
                 ).collect(Collectors.toList());
 
         if(tokenCacheAccessAspect != null){
@@ -241,71 +715,121 @@ public class TokenCache {
             context = TokenCacheAccessContext.builder().
                     clientId(clientId).
                     tokenCache(this).
+                    account(account).
+                    partitionKey(account.homeAccountId).
                     build();
             tokenCacheAccessAspect.beforeCacheAccess(context);
         }
 
-        Predicate<Map.Entry<String, ? extends Credential>> credentialToRemovePredicate = e ->
-                e.getValue().homeAccountId().equals(account.homeAccountId) &&
-                        environmentAliases.contains(e.getValue().environment);
+        Predicate<Credential> credentialToRemovePredicate = credential ->
+                account.homeAccountId.equals(credential.homeAccountId()) &&
+                        environmentAliases.contains(credential.environment);
 
-        accessTokens.entrySet().removeIf(credentialToRemovePredicate);
+        int removedCount = 0;
+        Lock lock = getLock(account.homeAccountId).writeLock();
+        lock.lock();
+        try {
+            removedCount += removeCredentials
+                    (accessTokens, accessTokensIndex, changedAccessTokens, credentialToRemovePredicate);
 
-        refreshTokens.entrySet().removeIf(credentialToRemovePredicate);
+            removedCount += removeCredentials
+                    (refreshTokens, refreshTokensIndex, changedRefreshTokens, credentialToRemovePredicate);
 
-        idTokens.entrySet().removeIf(credentialToRemovePredicate);
+            removedCount += removeCredentials
+                    (idTokens, idTokensIndex, changedIdTokens, credentialToRemovePredicate);
+        } finally {
+            lock.unlock();
+        }
+        compactSecretStoreIfNeeded();
 
         if(tokenCacheAccessAspect != null){
+            context = TokenCacheAccessContext.builder().
+                    clientId(clientId).
+                    tokenCache(this).
+                    account(account).
+                    partitionKey(account.homeAccountId).
+                    isCacheChanged(removedCount > 0).
+                    removedEntriesCount(removedCount).
+                    build();
             tokenCacheAccessAspect.afterCacheAccess(context);
         }
     }
 
     boolean isMatchingScopes(AccessTokenCacheEntity accessTokenCacheEntity, Set<String> scopes){
-
-        Set<String> accessTokenCacheEntityScopes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
-        accessTokenCacheEntityScopes.addAll
-                (Arrays.asList(accessTokenCacheEntity.target().split(Constants.SCOPES_SEPARATOR)));
-
-        return accessTokenCacheEntityScopes.containsAll(scopes);
+        return accessTokenCacheEntity.scopeSet().containsAll(scopes);
     }
 
     Optional<AccessTokenCacheEntity> getAccessTokenCacheEntity
             (Account account, Authority authority, Set<String> scopes, String clientId,
              Set<String> environmentAliases){
+        return findAccessTokenCacheEntity
+                (account.homeAccountId, authority, scopes, clientId, environmentAliases, false);
+    }
+
+    /**
+     * @return access token acquired by the application for itself, which is not bound to any account
+     */
+    Optional<AccessTokenCacheEntity> getApplicationAccessTokenCacheEntity
+            (Authority authority, Set<String> scopes, String clientId, Set<String> environmentAliases){
+        return findAccessTokenCacheEntity(null, authority, scopes, clientId, environmentAliases, false);
+    }
+
+    /**
+     * @param extendedLifetime if true, access tokens are considered valid until their extended
+     *                         expiration time instead of their regular expiration time
+     */
+    private Optional<AccessTokenCacheEntity> findAccessTokenCacheEntity
+            (String homeAccountId, Authority authority, Set<String> scopes, String clientId,
+             Set<String> environmentAliases, boolean extendedLifetime){
         long currTimeStampSec = new Date().getTime()/1000;
 
-        return accessTokens.values().stream().filter
-                (accessToken -> accessToken.homeAccountId.equals(account.homeAccountId) &&
-                        environmentAliases.contains(accessToken.environment) &&
-                        Long.parseLong(accessToken.expiresOn()) > currTimeStampSec + MIN_ACCESS_TOKEN_EXPIRE_IN_SEC &&
-                        accessToken.realm.equals(authority.tenant()) &&
-                        accessToken.clientId.equals(clientId) &&
+        return accessTokensIndex.get(homeAccountId, clientId, authority.tenant(), environmentAliases).
+                stream().filter
+                (accessToken -> isValid(accessToken, currTimeStampSec, extendedLifetime) &&
                         isMatchingScopes(accessToken, scopes)
                 ).findAny();
     }
 
+    private static boolean isValid
+            (AccessTokenCacheEntity accessToken, long currTimeStampSec, boolean extendedLifetime){
+        if (extendedLifetime) {
+            return accessToken.extExpiresOnSec() > currTimeStampSec;
+        }
+        return accessToken.expiresOnSec() > currTimeStampSec + MIN_ACCESS_TOKEN_EXPIRE_IN_SEC;
+    }
+
     Optional<IdTokenCacheEntity> getIdTokenCacheEntity
             (Account account, Authority authority, String clientId, Set<String> environmentAliases){
-        return idTokens.values().stream().filter
-                (idToken -> idToken.homeAccountId.equals(account.homeAccountId) &&
-                        environmentAliases.contains(idToken.environment) &&
-                        idToken.realm.equals(authority.tenant()) &&
-                        idToken.clientId.equals(clientId)
-                ).findAny();
+        return idTokensIndex.get(account.homeAccountId, clientId, authority.tenant(), environmentAliases).
+                stream().findAny();
     }
 
     Optional<RefreshTokenCacheEntity> getRefreshTokenCacheEntity
             (Account account, String clientId, Set<String> environmentAliases) {
 
-        return refreshTokens.values().stream().filter
-                (refreshToken -> refreshToken.homeAccountId.equals(account.homeAccountId) &&
-                        environmentAliases.contains(refreshToken.environment) &&
-                        refreshToken.clientId.equals(clientId)
-                ).findAny();
+        return refreshTokensIndex.get(account.homeAccountId, clientId, "", environmentAliases).
+                stream().findAny();
     }
 
     AuthenticationResult getAuthenticationResult
-            (Account account, Authority authority, Set<String> scopes, String clientId) {
+            (Account account, Authority authority, Set<String> scopes, String clientId,
+             Set<String> environmentAliases) {
+        return getAuthenticationResult(account, authority, scopes, clientId, environmentAliases, false);
+    }
+
+    /**
+     * @return result containing access token which has expired, but is still within its extended
+     * lifetime, which can be used when the service is unavailable to issue a new one
+     */
+    AuthenticationResult getExtendedLifetimeAuthenticationResult
+            (Account account, Authority authority, Set<String> scopes, String clientId,
+             Set<String> environmentAliases) {
+        return getAuthenticationResult(account, authority, scopes, clientId, environmentAliases, true);
+    }
+
+    private AuthenticationResult getAuthenticationResult
+            (Account account, Authority authority, Set<String> scopes, String clientId,
+             Set<String> environmentAliases, boolean extendedLifetime) {
 
         TokenCacheAccessContext context = null;
         if(tokenCacheAccessAspect != null){
@@ -313,40 +837,111 @@ public class TokenCache {
                     clientId(clientId).
                     tokenCache(this).
                     account(account).
+                    partitionKey(account.homeAccountId).
                     build();
             tokenCacheAccessAspect.beforeCacheAccess(context);
         }
 
-        Set<String> environmentAliases = AadInstanceDiscovery.cache.get(account.environment).getAliasesSet();
+        AuthenticationResult.AuthenticationResultBuilder builder = AuthenticationResult.builder();
 
-        Optional<AccessTokenCacheEntity> atCacheEntity =
-                getAccessTokenCacheEntity(account, authority, scopes, clientId, environmentAliases);
+        Lock lock = getLock(account.homeAccountId).readLock();
+        lock.lock();
+        try {
+            Optional<AccessTokenCacheEntity> atCacheEntity = findAccessTokenCacheEntity(account.homeAccountId,
+                    authority, scopes, clientId, environmentAliases, extendedLifetime);
+
+            Optional<IdTokenCacheEntity> idTokenCacheEntity =
+                    getIdTokenCacheEntity(account, authority, clientId, environmentAliases);
+
+            Optional<RefreshTokenCacheEntity> rtCacheEntity =
+                    getRefreshTokenCacheEntity(account, clientId, environmentAliases);
+
+            // secrets are read under the lock, as a secret store reuses space when the cache is reloaded
+            if (atCacheEntity.isPresent()) {
+                builder.
+                        accessToken(atCacheEntity.get().secret()).
+                        expiresOn(atCacheEntity.get().expiresOnSec()).
+                        extExpiresOn(atCacheEntity.get().extExpiresOnSec());
+            }
+            if (idTokenCacheEntity.isPresent()) {
+                builder.
+                        idToken(idTokenCacheEntity.get().secret());
+            }
+            if (rtCacheEntity.isPresent()) {
+                builder.
+                        refreshToken(rtCacheEntity.get().secret());
+            }
+        } finally {
+            lock.unlock();
+        }
 
-        Optional<IdTokenCacheEntity> idTokenCacheEntity =
-                getIdTokenCacheEntity(account, authority, clientId, environmentAliases);
+        if(tokenCacheAccessAspect != null){
+            tokenCacheAccessAspect.afterCacheAccess(context);
+        }
+
+        builder.account(account);
+        builder.environment(authority.host());
 
-        Optional<RefreshTokenCacheEntity> rtCacheEntity =
-                getRefreshTokenCacheEntity(account, clientId, environmentAliases);
+        return builder.build();
+    }
+
+    /**
+     * @return cached result of on-behalf-of flow for given key, or null if there is none valid for
+     * more than {@link #MIN_ACCESS_TOKEN_EXPIRE_IN_SEC}
+     */
+    AuthenticationResult getOnBehalfOfAuthenticationResult(String key) {
+        AuthenticationResult result = onBehalfOfResults.getIfPresent(key);
+        if (result == null) {
+            return null;
+        }
 
+        long currTimeStampSec = System.currentTimeMillis() / 1000;
+        if (result.expiresOn() <= currTimeStampSec + MIN_ACCESS_TOKEN_EXPIRE_IN_SEC) {
+            onBehalfOfResults.asMap().remove(key, result);
+            return null;
+        }
+        return result;
+    }
+
+    void saveOnBehalfOfAuthenticationResult(String key, AuthenticationResult result) {
+        if (!StringHelper.isBlank(result.accessToken())) {
+            onBehalfOfResults.put(key, result);
+        }
+    }
+
+    AuthenticationResult getApplicationAuthenticationResult
+            (Authority authority, Set<String> scopes, String clientId, Set<String> environmentAliases) {
+
+        TokenCacheAccessContext context = null;
         if(tokenCacheAccessAspect != null){
-            tokenCacheAccessAspect.afterCacheAccess(context);
+            context = TokenCacheAccessContext.builder().
+                    clientId(clientId).
+                    tokenCache(this).
+                    partitionKey(getAppPartitionKey(clientId, authority.tenant())).
+                    build();
+            tokenCacheAccessAspect.beforeCacheAccess(context);
         }
 
         AuthenticationResult.AuthenticationResultBuilder builder = AuthenticationResult.builder();
-        if (atCacheEntity.isPresent()) {
-            builder.
-                    accessToken(atCacheEntity.get().secret).
-                    expiresOn(Long.parseLong(atCacheEntity.get().expiresOn()));
-        }
-        if (idTokenCacheEntity.isPresent()) {
-            builder.
-                    idToken(idTokenCacheEntity.get().secret);
+
+        Lock lock = getLock(null).readLock();
+        lock.lock();
+        try {
+            Optional<AccessTokenCacheEntity> atCacheEntity =
+                    getApplicationAccessTokenCacheEntity(authority, scopes, clientId, environmentAliases);
+            if (atCacheEntity.isPresent()) {
+                builder.
+                        accessToken(atCacheEntity.get().secret()).
+                        expiresOn(atCacheEntity.get().expiresOnSec());
+            }
+        } finally {
+            lock.unlock();
         }
-        if (rtCacheEntity.isPresent()) {
-            builder.
-                    refreshToken(rtCacheEntity.get().secret);
+
+        if(tokenCacheAccessAspect != null){
+            tokenCacheAccessAspect.afterCacheAccess(context);
         }
-        builder.account(account);
+
         builder.environment(authority.host());
 
         return builder.build();
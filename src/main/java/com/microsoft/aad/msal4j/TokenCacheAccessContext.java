@@ -39,5 +39,25 @@ public class TokenCacheAccessContext {
 
     private Account account;
 
+    /**
+     * Key of the cache partition the access is limited to: home account id of the account
+     * for user flows, or a key derived from client id and tenant for application flows.
+     * Null if the access concerns the whole cache, like listing accounts.
+     * Entries of the partition can be loaded and persisted with
+     * {@link TokenCache#deserializeAndLoadPartition(String, String)} and
+     * {@link TokenCache#serializePartition(String)}.
+     */
+    private String partitionKey;
+
+    /**
+     * True if entries of the cache were added, updated or removed by the access, in which case
+     * persistence layers need to write the cache in afterCacheAccess. False for read only access
+     * and for removals which found nothing to remove.
+     */
     private boolean isCacheChanged;
+
+    /**
+     * Number of entries removed from the cache by the access
+     */
+    private int removedEntriesCount;
 }
@@ -0,0 +1,367 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.msal4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format of the token cache, convertible to and from the JSON format through
+ * {@link TokenCache}. Data starts with a magic number and format version, followed by a table
+ * of distinct short strings like environments, client ids, realms and home account ids,
+ * which entries reference by index. Secrets are stored as length-prefixed UTF-8 bytes.
+ * Keys of entries are not stored when they can be derived from the entry itself.
+ */
+final class TokenCacheBinaryCodec {
+
+    static final int MAGIC = 0x4D53414C;
+    static final int VERSION = 1;
+
+    private static final int DERIVED_KEY = 0;
+    private static final int EXPLICIT_KEY = 1;
+
+    private static final int NULL_TIMESTAMP = 0;
+    private static final int NUMERIC_TIMESTAMP = 1;
+    private static final int STRING_TIMESTAMP = 2;
+
+    /**
+     * Content of the token cache, as read from or written to the binary format
+     */
+    static class Content {
+        Map<String, AccessTokenCacheEntity> accessTokens = new HashMap<>();
+        Map<String, RefreshTokenCacheEntity> refreshTokens = new HashMap<>();
+        Map<String, IdTokenCacheEntity> idTokens = new HashMap<>();
+        Map<String, Account> accounts = new HashMap<>();
+        String unknownMembers;
+    }
+
+    private TokenCacheBinaryCodec() {
+    }
+
+    static byte[] encode(Content content) {
+        try {
+            StringTableWriter strings = new StringTableWriter();
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+
+            writeVarInt(body, content.accessTokens.size());
+            for (Map.Entry<String, AccessTokenCacheEntity> entry : content.accessTokens.entrySet()) {
+                AccessTokenCacheEntity at = entry.getValue();
+                writeKey(body, strings, entry.getKey(), at.getKey());
+                writeCredential(body, strings, at);
+                writeVarInt(body, strings.indexOf(at.realm()));
+                writeVarInt(body, strings.indexOf(at.target()));
+                writeTimestamp(body, at.cachedAt());
+                writeTimestamp(body, at.expiresOn());
+                writeTimestamp(body, at.extExpiresOn());
+            }
+
+            writeVarInt(body, content.refreshTokens.size());
+            for (Map.Entry<String, RefreshTokenCacheEntity> entry : content.refreshTokens.entrySet()) {
+                RefreshTokenCacheEntity rt = entry.getValue();
+                writeKey(body, strings, entry.getKey(), rt.getKey());
+                writeCredential(body, strings, rt);
+            }
+
+            writeVarInt(body, content.idTokens.size());
+            for (Map.Entry<String, IdTokenCacheEntity> entry : content.idTokens.entrySet()) {
+                IdTokenCacheEntity idToken = entry.getValue();
+                writeKey(body, strings, entry.getKey(), idToken.getKey());
+                writeCredential(body, strings, idToken);
+                writeVarInt(body, strings.indexOf(idToken.getRealm()));
+            }
+
+            writeVarInt(body, content.accounts.size());
+            for (Map.Entry<String, Account> entry : content.accounts.entrySet()) {
+                Account account = entry.getValue();
+                writeKey(body, strings, entry.getKey(), account.getKey());
+                writeVarInt(body, strings.indexOf(account.homeAccountId));
+                writeVarInt(body, strings.indexOf(account.environment));
+                writeVarInt(body, strings.indexOf(account.realm));
+                writeVarInt(body, strings.indexOf(account.localAccountId));
+                writeVarInt(body, strings.indexOf(account.username));
+                writeVarInt(body, strings.indexOf(account.name));
+                writeVarInt(body, strings.indexOf(account.clientInfoStr));
+                writeVarInt(body, strings.indexOf(account.authorityType));
+            }
+
+            writeBytes(body, content.unknownMembers);
+            body.flush();
+
+            ByteArrayOutputStream resultBytes = new ByteArrayOutputStream(bodyBytes.size() + 1024);
+            DataOutputStream result = new DataOutputStream(resultBytes);
+            result.writeInt(MAGIC);
+            result.writeByte(VERSION);
+            writeVarInt(result, strings.strings.size());
+            for (String string : strings.strings) {
+                writeBytes(result, string);
+            }
+            bodyBytes.writeTo(result);
+            result.flush();
+
+            return resultBytes.toByteArray();
+        } catch (IOException ex) {
+            // not thrown by in memory streams
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static Content decode(byte[] data) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Data is not in binary token cache format");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported binary token cache format version: " + version);
+            }
+
+            int stringCount = readVarInt(in);
+            List<String> strings = new ArrayList<>(stringCount + 1);
+            // index 0 stands for null
+            strings.add(null);
+            for (int i = 0; i < stringCount; i++) {
+                strings.add(readBytes(in));
+            }
+
+            Content content = new Content();
+
+            int count = readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                String key = readKey(in, strings);
+                AccessTokenCacheEntity at = new AccessTokenCacheEntity();
+                readCredential(in, strings, at);
+                at.realm(readString(in, strings));
+                at.target(readString(in, strings));
+                at.cachedAt(readTimestamp(in));
+                at.expiresOn(readTimestamp(in));
+                at.extExpiresOn(readTimestamp(in));
+                content.accessTokens.put(key != null ? key : at.getKey(), at);
+            }
+
+            count = readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                String key = readKey(in, strings);
+                RefreshTokenCacheEntity rt = new RefreshTokenCacheEntity();
+                readCredential(in, strings, rt);
+                content.refreshTokens.put(key != null ? key : rt.getKey(), rt);
+            }
+
+            count = readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                String key = readKey(in, strings);
+                IdTokenCacheEntity idToken = new IdTokenCacheEntity();
+                readCredential(in, strings, idToken);
+                idToken.setRealm(readString(in, strings));
+                content.idTokens.put(key != null ? key : idToken.getKey(), idToken);
+            }
+
+            count = readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                String key = readKey(in, strings);
+                Account account = new Account();
+                account.homeAccountId = readString(in, strings);
+                account.environment = readString(in, strings);
+                account.realm = readString(in, strings);
+                account.localAccountId = readString(in, strings);
+                account.username = readString(in, strings);
+                account.name = readString(in, strings);
+                account.clientInfoStr = readString(in, strings);
+                account.authorityType = readString(in, strings);
+                content.accounts.put(key != null ? key : account.getKey(), account);
+            }
+
+            content.unknownMembers = readBytes(in);
+
+            return content;
+        } catch (EOFException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Binary token cache data is truncated or corrupted", ex);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Binary token cache data can not be read", ex);
+        }
+    }
+
+    private static void writeCredential(DataOutputStream out, StringTableWriter strings, Credential credential)
+            throws IOException {
+        writeVarInt(out, strings.indexOf(credential.homeAccountId));
+        writeVarInt(out, strings.indexOf(credential.environment));
+        writeVarInt(out, strings.indexOf(credential.clientId));
+        writeBytes(out, credential.secret());
+    }
+
+    private static void readCredential(DataInputStream in, List<String> strings, Credential credential)
+            throws IOException {
+        credential.homeAccountId = readString(in, strings);
+        credential.environment = readString(in, strings);
+        credential.clientId = readString(in, strings);
+        credential.secret = readBytes(in);
+    }
+
+    private static void writeKey(DataOutputStream out, StringTableWriter strings, String key, String derivedKey)
+            throws IOException {
+        if (key.equals(derivedKey)) {
+            out.writeByte(DERIVED_KEY);
+        } else {
+            out.writeByte(EXPLICIT_KEY);
+            writeBytes(out, key);
+        }
+    }
+
+    /**
+     * @return key of the entry, or null if it is derived from the entry
+     */
+    private static String readKey(DataInputStream in, List<String> strings) throws IOException {
+        int keyType = in.readUnsignedByte();
+        if (keyType == DERIVED_KEY) {
+            return null;
+        }
+        if (keyType != EXPLICIT_KEY) {
+            throw new IOException("Invalid key type: " + keyType);
+        }
+        return readBytes(in);
+    }
+
+    private static void writeTimestamp(DataOutputStream out, String timestamp) throws IOException {
+        if (timestamp == null) {
+            out.writeByte(NULL_TIMESTAMP);
+            return;
+        }
+        long value;
+        try {
+            value = Long.parseLong(timestamp);
+        } catch (NumberFormatException ex) {
+            value = -1;
+        }
+        if (value >= 0 && Long.toString(value).equals(timestamp)) {
+            out.writeByte(NUMERIC_TIMESTAMP);
+            writeVarLong(out, value);
+        } else {
+            out.writeByte(STRING_TIMESTAMP);
+            writeBytes(out, timestamp);
+        }
+    }
+
+    private static String readTimestamp(DataInputStream in) throws IOException {
+        int timestampType = in.readUnsignedByte();
+        switch (timestampType) {
+            case NULL_TIMESTAMP:
+                return null;
+            case NUMERIC_TIMESTAMP:
+                return Long.toString(readVarLong(in));
+            case STRING_TIMESTAMP:
+                return readBytes(in);
+            default:
+                throw new IOException("Invalid timestamp type: " + timestampType);
+        }
+    }
+
+    private static String readString(DataInputStream in, List<String> strings) throws IOException {
+        return strings.get(readVarInt(in));
+    }
+
+    /**
+     * Writes nullable string as UTF-8 bytes prefixed by their length plus one, zero stands for null
+     */
+    private static void writeBytes(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readBytes(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Writes non negative number in 7 bit groups, least significant first
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable length number");
+    }
+
+    private static class StringTableWriter {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int indexOf(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                strings.add(value);
+                index = strings.size();
+                indexes.put(value, index);
+            }
+            return index;
+        }
+    }
+}
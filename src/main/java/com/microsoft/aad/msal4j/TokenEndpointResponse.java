@@ -0,0 +1,143 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.msal4j;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.nimbusds.oauth2.sdk.ParseException;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Successful response of the token endpoint. Response is read with streaming JSON parser,
+ * only members used by the library are kept, others are skipped without being materialized.
+ */
+@Getter(AccessLevel.PACKAGE)
+class TokenEndpointResponse {
+
+    private String accessToken;
+
+    private String refreshToken;
+
+    private String idToken;
+
+    private String scope;
+
+    private String clientInfo;
+
+    private long expiresIn;
+
+    private long extExpiresIn;
+
+    static TokenEndpointResponse parse(String content) throws ParseException {
+        if (StringHelper.isBlank(content)) {
+            throw new ParseException("Missing HTTP content");
+        }
+        return parse(new StringReader(content));
+    }
+
+    static TokenEndpointResponse parse(Reader content) throws ParseException {
+        TokenEndpointResponse response = new TokenEndpointResponse();
+        try (JsonReader reader = new JsonReader(content)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "access_token":
+                        response.accessToken = nextString(reader);
+                        break;
+                    case "refresh_token":
+                        response.refreshToken = nextString(reader);
+                        break;
+                    case "id_token":
+                        response.idToken = nextString(reader);
+                        break;
+                    case "scope":
+                        response.scope = nextString(reader);
+                        break;
+                    case "client_info":
+                        response.clientInfo = nextString(reader);
+                        break;
+                    case "expires_in":
+                        response.expiresIn = nextLong(reader, 0);
+                        break;
+                    case "ext_expires_in":
+                        response.extExpiresIn = nextLong(reader, 0);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException ex) {
+            throw new ParseException("Invalid token response: " + ex.getMessage(), ex);
+        }
+
+        if (StringHelper.isBlank(response.accessToken)) {
+            throw new ParseException("Missing JSON object member with key \"access_token\"");
+        }
+        return response;
+    }
+
+    /**
+     * @return string value, or first element of array value
+     */
+    static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BEGIN_ARRAY) {
+            String value = null;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (value == null && reader.peek() != JsonToken.NULL) {
+                    value = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endArray();
+            return value;
+        }
+        return reader.nextString();
+    }
+
+    static Long nextLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextLong();
+    }
+
+    static long nextLong(JsonReader reader, long defaultValue) throws IOException {
+        Long value = nextLong(reader);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,201 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Refreshes access tokens in background shortly before they would be considered expired
+ * by the token cache, so that callers keep getting cached tokens. Only tokens requested again
+ * since their last refresh are refreshed, tokens nobody asks for are dropped from tracking.
+ */
+class TokenRefreshScheduler {
+
+    /**
+     * How long before {@link TokenCache#MIN_ACCESS_TOKEN_EXPIRE_IN_SEC} threshold the token is refreshed
+     */
+    static final int REFRESH_AHEAD_SEC = 60;
+
+    private final ClientApplicationBase clientApplication;
+    private final ScheduledExecutorService scheduledExecutorService;
+    final ConcurrentHashMap<String, TrackedRequest> trackedRequests = new ConcurrentHashMap<>();
+
+    private static class TrackedRequest {
+        private final Supplier<MsalRequest> refreshRequestFactory;
+        private volatile long lastAccessedMs;
+        private volatile long lastRefreshedMs;
+
+        TrackedRequest(Supplier<MsalRequest> refreshRequestFactory) {
+            this.refreshRequestFactory = refreshRequestFactory;
+            this.lastRefreshedMs = System.currentTimeMillis();
+            this.lastAccessedMs = lastRefreshedMs;
+        }
+    }
+
+    TokenRefreshScheduler(ClientApplicationBase clientApplication) {
+        this(clientApplication, Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().
+                        setDaemon(true).
+                        setNameFormat("msal4j-token-refresh-%d").
+                        build()));
+    }
+
+    TokenRefreshScheduler(ClientApplicationBase clientApplication,
+                          ScheduledExecutorService scheduledExecutorService) {
+        this.clientApplication = clientApplication;
+        this.scheduledExecutorService = scheduledExecutorService;
+    }
+
+    /**
+     * Stops refreshing tokens, called when the application is closed
+     */
+    void shutdown() {
+        scheduledExecutorService.shutdownNow();
+        trackedRequests.clear();
+    }
+
+    /**
+     * Called for every result returned to the caller, starts tracking the request
+     * if its token can be refreshed in background
+     */
+    void onTokenServed(MsalRequest msalRequest, AuthenticationResult result) {
+        if (result == null || StringHelper.isBlank(result.accessToken()) || result.expiresOn() <= 0) {
+            return;
+        }
+
+        String key = msalRequest.deduplicationKey();
+        TrackedRequest trackedRequest = key != null ? trackedRequests.get(key) : null;
+        if (trackedRequest != null) {
+            trackedRequest.lastAccessedMs = System.currentTimeMillis();
+            return;
+        }
+
+        Supplier<MsalRequest> refreshRequestFactory = getRefreshRequestFactory(msalRequest);
+        if (refreshRequestFactory == null) {
+            return;
+        }
+
+        trackedRequest = new TrackedRequest(refreshRequestFactory);
+        if (trackedRequests.putIfAbsent(key, trackedRequest) == null) {
+            schedule(key, trackedRequest, result.expiresOn());
+        }
+    }
+
+    private Supplier<MsalRequest> getRefreshRequestFactory(MsalRequest msalRequest) {
+        if (msalRequest instanceof SilentRequest) {
+            SilentRequest silentRequest = (SilentRequest) msalRequest;
+            if (silentRequest.parameters().forceRefresh()) {
+                return null;
+            }
+            SilentParameters parameters = SilentParameters.
+                    builder(silentRequest.parameters().scopes(), silentRequest.parameters().account()).
+                    authorityUrl(silentRequest.parameters().authorityUrl()).
+                    forceRefresh(true).
+                    build();
+
+            return () -> {
+                try {
+                    return new SilentRequest(
+                            parameters,
+                            clientApplication,
+                            clientApplication.createRequestContext(AcquireTokenPublicApi.ACQUIRE_TOKEN_SILENTLY));
+                } catch (MalformedURLException ex) {
+                    throw new AuthenticationException(ex);
+                }
+            };
+        } else if (msalRequest instanceof ClientCredentialRequest) {
+            ClientCredentialRequest clientCredentialRequest = (ClientCredentialRequest) msalRequest;
+            if (clientCredentialRequest.parameters().skipCache()) {
+                return null;
+            }
+            ClientCredentialParameters parameters = ClientCredentialParameters.
+                    builder(clientCredentialRequest.parameters().scopes()).
+                    authorityUrl(clientCredentialRequest.parameters().authorityUrl()).
+                    tenant(clientCredentialRequest.parameters().tenant()).
+                    skipCache(true).
+                    build();
+
+            return () -> new ClientCredentialRequest(
+                    parameters,
+                    (ConfidentialClientApplication) clientApplication,
+                    clientApplication.createRequestContext(AcquireTokenPublicApi.ACQUIRE_TOKEN_FOR_CLIENT));
+        }
+        return null;
+    }
+
+    private void schedule(String key, TrackedRequest trackedRequest, long expiresOn) {
+        long refreshOnSec = expiresOn - TokenCache.MIN_ACCESS_TOKEN_EXPIRE_IN_SEC - REFRESH_AHEAD_SEC;
+        long delayMs = Math.max(0, refreshOnSec * 1000 - System.currentTimeMillis());
+
+        try {
+            scheduledExecutorService.schedule(() -> refresh(key, trackedRequest), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // application was closed
+            trackedRequests.remove(key, trackedRequest);
+        }
+    }
+
+    private void refresh(String key, TrackedRequest trackedRequest) {
+        if (trackedRequest.lastAccessedMs <= trackedRequest.lastRefreshedMs) {
+            // token was not requested since last refresh, stop refreshing it
+            trackedRequests.remove(key, trackedRequest);
+            return;
+        }
+
+        trackedRequest.lastRefreshedMs = System.currentTimeMillis();
+        try {
+            clientApplication.executeRequest(trackedRequest.refreshRequestFactory.get()).
+                    whenComplete((result, ex) -> {
+                        if (ex == null && result != null && !StringHelper.isBlank(result.accessToken())) {
+                            schedule(key, trackedRequest, result.expiresOn());
+                        } else {
+                            stopTracking(key, trackedRequest, ex);
+                        }
+                    });
+        } catch (RuntimeException ex) {
+            stopTracking(key, trackedRequest, ex);
+        }
+    }
+
+    /**
+     * Stops refreshing token whose refresh failed, it is refreshed again once requested by a caller
+     */
+    private void stopTracking(String key, TrackedRequest trackedRequest, Throwable ex) {
+        trackedRequests.remove(key, trackedRequest);
+        String details = ex != null ?
+                LogHelper.getPiiScrubbedDetails(ex) :
+                "token endpoint returned no access token";
+        clientApplication.log.warn(LogHelper.createMessage(
+                "Background token refresh failed, token is no longer refreshed ahead: " + details,
+                clientApplication.correlationId()));
+    }
+}
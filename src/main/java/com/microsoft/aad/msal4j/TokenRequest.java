@@ -30,6 +30,8 @@ import java.net.URL;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.nimbusds.oauth2.sdk.ErrorObject;
 import com.google.gson.JsonElement;
@@ -37,11 +39,11 @@ import com.google.gson.JsonParser;
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.SerializeException;
 import com.nimbusds.oauth2.sdk.TokenErrorResponse;
+import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
 import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
 import com.nimbusds.oauth2.sdk.http.HTTPRequest;
 import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import com.nimbusds.oauth2.sdk.util.URLUtils;
-import com.nimbusds.openid.connect.sdk.token.OIDCTokens;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,94 +84,151 @@ class TokenRequest {
                 httpEvent,
                 false)) {
 
-            AuthenticationResult result;
-            HTTPResponse httpResponse;
+            HTTPResponse httpResponse = toOauthHttpRequest().send();
 
-            httpResponse = toOauthHttpRequest().send();
+            return processResponse(httpEvent, httpResponse);
+        }
+    }
 
-            addResponseHeadersToHttpEvent(httpEvent, httpResponse);
+    /**
+     * Sends token request without blocking the calling thread, and processes the response
+     * once it is received
+     *
+     * @return future completed with the result, or with {@link CompletionException} wrapping
+     * the failure
+     */
+    CompletableFuture<AuthenticationResult> executeOauthRequestAndProcessResponseAsync()
+            throws SerializeException {
 
-            if (httpResponse.getStatusCode() == HTTPResponse.SC_OK) {
-                final TokenResponse response =
-                        TokenResponse.parseHttpResponse(httpResponse);
+        HttpEvent httpEvent = createHttpEvent();
 
-                OIDCTokens tokens = response.getOIDCTokens();
-                String refreshToken = null;
-                if (tokens.getRefreshToken() != null) {
-                    refreshToken = tokens.getRefreshToken().getValue();
-                }
+        TelemetryHelper telemetryHelper = serviceBundle.getTelemetryManager().createTelemetryHelper(
+                msalRequest.requestContext().getTelemetryRequestId(),
+                msalRequest.application().clientId(),
+                httpEvent,
+                false);
 
-                Account account = null;
+        CompletableFuture<HTTPResponse> httpResponseFuture;
+        try {
+            httpResponseFuture = toOauthHttpRequest().sendAsync();
+        } catch (RuntimeException ex) {
+            telemetryHelper.close();
+            throw ex;
+        }
 
-                if (tokens.getIDToken() != null) {
-                    String idTokenJson = tokens.getIDToken().getParsedParts()[1].decodeToString();
-                    IdToken idToken = JsonHelper.convertJsonToObject(idTokenJson, IdToken.class);
+        return httpResponseFuture.thenApply(httpResponse -> {
+            try {
+                return processResponse(httpEvent, httpResponse);
+            } catch (ParseException ex) {
+                throw new CompletionException(ex);
+            }
+        }).whenComplete((result, ex) -> telemetryHelper.close());
+    }
 
-                    if (!StringHelper.isBlank(response.getClientInfo())) {
+    private AuthenticationResult processResponse(HttpEvent httpEvent, HTTPResponse httpResponse)
+            throws ParseException, AuthenticationException {
 
-                        AuthorityType type = msalRequest.application().authenticationAuthority.authorityType;
-                        if(type == AuthorityType.B2C){
+        AuthenticationResult result;
 
-                            B2CAuthority authority = (B2CAuthority) msalRequest.application().authenticationAuthority;
+        addResponseHeadersToHttpEvent(httpEvent, httpResponse);
 
-                            account = Account.create(
-                                    response.getClientInfo(),
-                                    url.getHost(),
-                                    idToken,
-                                    authority.policy);
-                        } else {
-                            account = Account.create(
-                                    response.getClientInfo(),
-                                    url.getHost(),
-                                    idToken);
-                        }
-                    }
-                }
-                long currTimestampSec = new Date().getTime() / 1000;
-
-                result = AuthenticationResult.builder().
-                        accessToken(tokens.getAccessToken().getValue()).
-                        refreshToken(refreshToken).
-                        idToken(tokens.getIDTokenString()).
-                        environment(url.getHost()).
-                        expiresOn(currTimestampSec + response.getExpiresIn()).
-                        extExpiresOn(response.getExtExpiresIn() > 0 ? currTimestampSec + response.getExtExpiresIn() : 0).
-                        account(account).
-                        scopes(response.getScope()).
-                        build();
+        int statusCode = httpResponse.getStatusCode();
+        if (statusCode == HTTPResponse.SC_OK) {
+            final TokenEndpointResponse response =
+                    TokenEndpointResponse.parse(httpResponse.getContent());
 
-            } else {
-                final TokenErrorResponse errorResponse = TokenErrorResponse.parse(httpResponse);
-                ErrorObject errorObject = errorResponse.getErrorObject();
+            Account account = null;
+
+            if (!StringHelper.isBlank(response.getIdToken())) {
+                IdToken idToken = parseIdToken(response.getIdToken());
 
-                if (AuthenticationErrorCode.AUTHORIZATION_PENDING.toString()
-                        .equals(errorObject.getCode())) {
+                if (!StringHelper.isBlank(response.getClientInfo())) {
 
-                    httpEvent.setOauthErrorCode(AuthenticationErrorCode.AUTHORIZATION_PENDING.toString());
+                    AuthorityType type = msalRequest.application().authenticationAuthority.authorityType;
+                    if(type == AuthorityType.B2C){
 
-                    throw new AuthenticationException(AuthenticationErrorCode.AUTHORIZATION_PENDING,
-                            errorObject.getDescription());
+                        B2CAuthority authority = (B2CAuthority) msalRequest.application().authenticationAuthority;
+
+                        account = Account.create(
+                                response.getClientInfo(),
+                                url.getHost(),
+                                idToken,
+                                authority.policy);
+                    } else {
+                        account = Account.create(
+                                response.getClientInfo(),
+                                url.getHost(),
+                                idToken);
+                    }
                 }
+            }
+            long currTimestampSec = new Date().getTime() / 1000;
+
+            result = AuthenticationResult.builder().
+                    accessToken(response.getAccessToken()).
+                    refreshToken(response.getRefreshToken()).
+                    idToken(response.getIdToken()).
+                    environment(url.getHost()).
+                    expiresOn(currTimestampSec + response.getExpiresIn()).
+                    extExpiresOn(response.getExtExpiresIn() > 0 ? currTimestampSec + response.getExtExpiresIn() : 0).
+                    account(account).
+                    scopes(response.getScope()).
+                    build();
+
+        } else {
+            final TokenErrorResponse errorResponse;
+            try {
+                errorResponse = TokenErrorResponse.parse(httpResponse);
+            } catch (ParseException ex) {
+                if (statusCode >= HTTPResponse.SC_SERVER_ERROR) {
+                    httpEvent.setOauthErrorCode(AuthenticationErrorCode.SERVICE_ERROR.toString());
+
+                    throw new AuthenticationException(AuthenticationErrorCode.SERVICE_ERROR,
+                            "Server returned HTTP response code: " + statusCode);
+                }
+                throw ex;
+            }
+            ErrorObject errorObject = errorResponse.getErrorObject();
+
+            if (AuthenticationErrorCode.AUTHORIZATION_PENDING.toString()
+                    .equals(errorObject.getCode())) {
 
-                if (HTTPResponse.SC_BAD_REQUEST == errorObject.getHTTPStatusCode() &&
-                        AuthenticationErrorCode.INTERACTION_REQUIRED.toString().equals(errorObject.getCode())) {
+                httpEvent.setOauthErrorCode(AuthenticationErrorCode.AUTHORIZATION_PENDING.toString());
 
-                    httpEvent.setOauthErrorCode(AuthenticationErrorCode.INTERACTION_REQUIRED.toString());
+                throw new AuthenticationException(AuthenticationErrorCode.AUTHORIZATION_PENDING,
+                        errorObject.getDescription());
+            }
+
+            if (HTTPResponse.SC_BAD_REQUEST == errorObject.getHTTPStatusCode() &&
+                    AuthenticationErrorCode.INTERACTION_REQUIRED.toString().equals(errorObject.getCode())) {
 
-                    throw new ClaimsChallengeException(
-                            errorResponse.toJSONObject().toJSONString(),
-                            getClaims(httpResponse.getContent()));
-                } else {
-                    String telemetryErrorCode = Strings.isNullOrEmpty(errorObject.getCode()) ?
-                            AuthenticationErrorCode.UNKNOWN.toString() :
-                            errorObject.getCode();
+                httpEvent.setOauthErrorCode(AuthenticationErrorCode.INTERACTION_REQUIRED.toString());
+
+                throw new ClaimsChallengeException(
+                        errorResponse.toJSONObject().toJSONString(),
+                        getClaims(httpResponse.getContent()));
+            } else {
+                String telemetryErrorCode = Strings.isNullOrEmpty(errorObject.getCode()) ?
+                        AuthenticationErrorCode.UNKNOWN.toString() :
+                        errorObject.getCode();
 
-                    httpEvent.setOauthErrorCode(telemetryErrorCode);
+                httpEvent.setOauthErrorCode(telemetryErrorCode);
 
-                    throw new AuthenticationException(errorResponse.toJSONObject().toJSONString());
+                if (statusCode >= HTTPResponse.SC_SERVER_ERROR) {
+                    throw new AuthenticationException(AuthenticationErrorCode.SERVICE_ERROR,
+                            errorResponse.toJSONObject().toJSONString());
                 }
+                throw new AuthenticationException(errorResponse.toJSONObject().toJSONString());
             }
-            return result;
+        }
+        return result;
+    }
+
+    private static IdToken parseIdToken(String idToken) throws ParseException {
+        try {
+            return IdToken.parse(idToken);
+        } catch (java.text.ParseException ex) {
+            throw new ParseException(ex.getMessage(), ex);
         }
     }
 
@@ -239,8 +298,10 @@ class TokenRequest {
 
         oauthHttpRequest.setQuery(URLUtils.serializeParameters(params));
 
-        if (msalRequest.application().clientAuthentication != null) {
-            msalRequest.application().clientAuthentication.applyTo(oauthHttpRequest);
+        ClientAuthentication clientAuthentication =
+                msalRequest.application().getClientAuthentication(msalRequest.requestAuthority());
+        if (clientAuthentication != null) {
+            clientAuthentication.applyTo(oauthHttpRequest);
         }
 
         return oauthHttpRequest;
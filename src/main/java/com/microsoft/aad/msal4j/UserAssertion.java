@@ -30,6 +30,8 @@ public class UserAssertion {
 
     private final String assertion;
 
+    private volatile String assertionHash;
+
     /**
      * Constructor to create credential with a jwt token encoded as a base64 url
      * encoded string.
@@ -53,4 +55,19 @@ public class UserAssertion {
     public String getAssertion() {
         return assertion;
     }
+
+    /**
+     * Gets Base64 URL encoded SHA-256 hash of the assertion, used as cache key
+     * so that the assertion itself is not kept in the cache.
+     *
+     * @return string value
+     */
+    String getAssertionHash() {
+        String hash = assertionHash;
+        if (hash == null) {
+            hash = StringHelper.createBase64EncodedSha256Hash(assertion);
+            assertionHash = hash;
+        }
+        return hash;
+    }
 }
@@ -26,10 +26,13 @@ package com.microsoft.aad.msal4j;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.security.PrivateKey;
 import java.security.interfaces.RSAPrivateKey;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
 import org.easymock.EasyMock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.testng.annotations.Test;
@@ -74,4 +77,18 @@ public class AsymmetricKeyCredentialTest extends AbstractMsalTests {
         final AsymmetricKeyCredential kc = AsymmetricKeyCredential.create(key, null);
         assertNotNull(kc);
     }
+
+    @Test
+    public void testJwsHeaderPrecomputed() throws Exception {
+        final AsymmetricKeyCredential kc;
+        try (InputStream certificate = this.getClass()
+                .getResourceAsStream(TestConfiguration.AAD_CERTIFICATE_PATH)) {
+            kc = AsymmetricKeyCredential.create(certificate, TestConfiguration.AAD_CERTIFICATE_PASSWORD);
+        }
+
+        final JWSHeader header = kc.getJwsHeader();
+        assertEquals(header.getAlgorithm(), JWSAlgorithm.RS256);
+        assertEquals(header.getX509CertChain().get(0).toString(), kc.getPublicCertificate());
+        assertEquals(header.getX509CertThumbprint().toString(), kc.getPublicCertificateHash());
+    }
 }
@@ -47,8 +47,13 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class CacheTests extends AbstractMsalTests {
     String APP_DATA = "/app_data.json";
@@ -94,6 +99,412 @@ public class CacheTests extends AbstractMsalTests {
         JSONAssert.assertEquals(previouslyStoredCache, serializedCache, JSONCompareMode.STRICT);
     }
 
+    @Test
+    public void cacheBinarySerializationTest() throws IOException, URISyntaxException, JSONException {
+        String previouslyStoredCache = readResource("/cache_data/serialized_cache.json");
+
+        TokenCache jsonCache = new TokenCache(null);
+        jsonCache.deserializeAndLoadToCache(previouslyStoredCache);
+        byte[] binaryCache = jsonCache.serializeToBinary();
+
+        Assert.assertTrue(binaryCache.length < previouslyStoredCache.length());
+
+        TokenCache binaryLoadedCache = new TokenCache(null);
+        binaryLoadedCache.deserializeAndLoadFromBinary(binaryCache);
+
+        JSONAssert.assertEquals(previouslyStoredCache, binaryLoadedCache.serialize(), JSONCompareMode.STRICT);
+        Assert.assertEquals(binaryLoadedCache.serializeToBinary().length, binaryCache.length);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidBinaryCacheTest() {
+        new TokenCache(null).deserializeAndLoadFromBinary(new byte[]{1, 2, 3, 4, 5});
+    }
+
+    @Test
+    public void cachePartitionsTest() throws Exception {
+        String previouslyStoredCache = readResource("/cache_data/serialized_cache.json");
+        String homeAccountId = "9f4880d8-80ba-4c40-97bc-f7a23c703084.f645ad92-e38d-4d1a-b510-d1b09a74a8ca";
+
+        TokenCache tokenCache = new TokenCache(null);
+        tokenCache.deserializeAndLoadToCache(previouslyStoredCache);
+        String userPartition = tokenCache.serializePartition(homeAccountId);
+
+        TokenCache partitionedCache = new TokenCache(null);
+        partitionedCache.deserializeAndLoadPartition(homeAccountId, userPartition);
+
+        JSONObject expectedCache = JSONObjectUtils.parse(previouslyStoredCache);
+        expectedCache.remove("AppMetaData");
+        JSONAssert.assertEquals(expectedCache.toJSONString(), partitionedCache.serialize(), JSONCompareMode.STRICT);
+
+        String appPartitionKey = TokenCache.getAppPartitionKey("client_id", "tenant");
+        String appPartition = "{\"AccessToken\":{\"key\":{\"credential_type\":\"AccessToken\"," +
+                "\"realm\":\"tenant\",\"target\":\"scope\",\"cached_at\":\"1\",\"expires_on\":\"2\"," +
+                "\"environment\":\"login.microsoftonline.com\",\"client_id\":\"client_id\",\"secret\":\"at\"}}," +
+                "\"RefreshToken\":{},\"IdToken\":{},\"Account\":{}}";
+        partitionedCache.deserializeAndLoadPartition(appPartitionKey, appPartition);
+
+        JSONAssert.assertEquals(appPartition, partitionedCache.serializePartition(appPartitionKey),
+                JSONCompareMode.STRICT);
+        JSONAssert.assertEquals(userPartition, partitionedCache.serializePartition(homeAccountId),
+                JSONCompareMode.STRICT);
+
+        // loading partition leaves other partitions unchanged
+        partitionedCache.deserializeAndLoadPartition(homeAccountId, null);
+
+        Assert.assertTrue(partitionedCache.accounts.isEmpty());
+        Assert.assertTrue(partitionedCache.refreshTokens.isEmpty());
+        Assert.assertEquals(partitionedCache.accessTokens.keySet(), Collections.singleton("key"));
+    }
+
+    @Test
+    public void cacheChangesSerializationTest() throws Exception {
+        TokenCache tokenCache = new TokenCache(null);
+        tokenCache.deserializeAndLoadToCache(readResource("/cache_data/serialized_cache.json"));
+
+        JSONAssert.assertEquals("{}", tokenCache.serializeChanges(), JSONCompareMode.STRICT);
+
+        Account account = tokenCache.accounts.values().iterator().next();
+        String accessTokenKey = tokenCache.accessTokens.keySet().iterator().next();
+        String refreshTokenKey = tokenCache.refreshTokens.keySet().iterator().next();
+        tokenCache.removeAccount("b6c69a37-df96-4db0-9088-2ab96e1d8215", account,
+                new HashSet<>(Arrays.asList("login.microsoftonline.com", "login.windows.net")));
+
+        JSONObject changes = JSONObjectUtils.parse(tokenCache.serializeChanges());
+        Assert.assertTrue(((JSONObject) changes.get("AccessToken")).containsKey(accessTokenKey));
+        Assert.assertNull(((JSONObject) changes.get("AccessToken")).get(accessTokenKey));
+        Assert.assertTrue(((JSONObject) changes.get("RefreshToken")).containsKey(refreshTokenKey));
+        Assert.assertFalse(changes.containsKey("Account"));
+
+        // changes are reported once
+        JSONAssert.assertEquals("{}", tokenCache.serializeChanges(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    public void unknownCacheMembersPreservedTest() throws IOException, URISyntaxException, JSONException {
+        TokenCache tokenCache = new TokenCache(null);
+        tokenCache.deserializeAndLoadToCache(
+                "{\"AccessToken\":{},\"AppMetadata\":{\"key\":{\"client_id\":\"id\"}}}");
+
+        JSONAssert.assertEquals(
+                "{\"AccessToken\":{},\"RefreshToken\":{},\"IdToken\":{},\"Account\":{}," +
+                        "\"AppMetadata\":{\"key\":{\"client_id\":\"id\"}}}",
+                tokenCache.serialize(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    public void cacheLookupAfterDeserializationTest() throws IOException, URISyntaxException {
+        TokenCache tokenCache = new TokenCache(null);
+        tokenCache.deserializeAndLoadToCache(readResource("/cache_data/serialized_cache.json"));
+
+        Account account = tokenCache.accounts.values().iterator().next();
+        String clientId = "b6c69a37-df96-4db0-9088-2ab96e1d8215";
+        Authority authority = new AADAuthority(new URL("https://login.microsoftonline.com/" + account.realm() + "/"));
+        Set<String> environmentAliases = new HashSet<>(Arrays.asList("login.microsoftonline.com", "login.windows.net"));
+
+        AccessTokenCacheEntity accessToken = tokenCache.accessTokens.values().iterator().next();
+        Assert.assertEquals(accessToken.cachedAtSec(), 1553397772L);
+        Assert.assertEquals(accessToken.expiresOnSec(), 1553401371L);
+        Assert.assertEquals(accessToken.extExpiresOnSec(), 1553660571L);
+
+        Assert.assertTrue(tokenCache.getRefreshTokenCacheEntity(account, clientId, environmentAliases).isPresent());
+        Assert.assertTrue(tokenCache.getIdTokenCacheEntity(account, authority, clientId, environmentAliases).isPresent());
+        // cached access token is expired
+        Assert.assertFalse(tokenCache.getAccessTokenCacheEntity(account, authority,
+                Collections.singleton("User.Read"), clientId, environmentAliases).isPresent());
+
+        Assert.assertFalse(tokenCache.getRefreshTokenCacheEntity(account, "other_client_id", environmentAliases).isPresent());
+        Assert.assertFalse(tokenCache.getRefreshTokenCacheEntity(account, clientId,
+                Collections.singleton("login.chinacloudapi.cn")).isPresent());
+
+        Assert.assertEquals(tokenCache.getAccounts(clientId, environmentAliases).size(), 1);
+
+        tokenCache.removeAccount(clientId, account, environmentAliases);
+
+        Assert.assertFalse(tokenCache.getRefreshTokenCacheEntity(account, clientId, environmentAliases).isPresent());
+        Assert.assertFalse(tokenCache.getIdTokenCacheEntity(account, authority, clientId, environmentAliases).isPresent());
+        Assert.assertTrue(tokenCache.getAccounts(clientId, environmentAliases).isEmpty());
+    }
+
+    @Test
+    public void cacheWithSecretStoreTest() throws IOException, URISyntaxException, JSONException {
+        String previouslyStoredCache = readResource("/cache_data/serialized_cache.json");
+        Path secretsFile = Files.createTempFile("msal4j-secrets", ".bin");
+        try (MappedSecretStore secretStore = new MappedSecretStore(secretsFile)) {
+            TokenCache tokenCache = new TokenCache(null, secretStore);
+            tokenCache.deserializeAndLoadToCache(previouslyStoredCache);
+
+            RefreshTokenCacheEntity refreshToken = tokenCache.refreshTokens.values().iterator().next();
+            Assert.assertTrue(refreshToken.isSecretStored());
+            Assert.assertNull(refreshToken.secret);
+
+            JSONAssert.assertEquals(previouslyStoredCache, tokenCache.serialize(), JSONCompareMode.STRICT);
+
+            TokenCache binaryLoadedCache = new TokenCache(null);
+            binaryLoadedCache.deserializeAndLoadFromBinary(tokenCache.serializeToBinary());
+            Assert.assertEquals(binaryLoadedCache.refreshTokens.get(refreshToken.getKey()).secret(),
+                    refreshToken.secret());
+
+            // reloading reuses space of the secret store
+            tokenCache.deserializeAndLoadToCache(previouslyStoredCache);
+            JSONAssert.assertEquals(previouslyStoredCache, tokenCache.serialize(), JSONCompareMode.STRICT);
+        } finally {
+            Files.deleteIfExists(secretsFile);
+        }
+    }
+
+    @Test
+    public void cacheAccessChangeDetectionTest() throws IOException, URISyntaxException {
+        List<TokenCacheAccessContext> afterAccessContexts = new ArrayList<>();
+        TokenCache tokenCache = new TokenCache(new ITokenCacheAccessAspect() {
+            @Override
+            public void beforeCacheAccess(TokenCacheAccessContext tokenCacheAccessContext) {
+            }
+
+            @Override
+            public void afterCacheAccess(TokenCacheAccessContext tokenCacheAccessContext) {
+                afterAccessContexts.add(tokenCacheAccessContext);
+            }
+        });
+        tokenCache.deserializeAndLoadToCache(readResource("/cache_data/serialized_cache.json"));
+
+        Account account = tokenCache.accounts.values().iterator().next();
+        String clientId = "b6c69a37-df96-4db0-9088-2ab96e1d8215";
+        Set<String> environmentAliases = new HashSet<>(Arrays.asList("login.microsoftonline.com", "login.windows.net"));
+
+        tokenCache.getAccounts(clientId, environmentAliases);
+        tokenCache.removeAccount(clientId, account, environmentAliases);
+        tokenCache.removeAccount(clientId, account, environmentAliases);
+
+        Assert.assertEquals(afterAccessContexts.size(), 3);
+        Assert.assertFalse(afterAccessContexts.get(0).isCacheChanged());
+
+        Assert.assertTrue(afterAccessContexts.get(1).isCacheChanged());
+        Assert.assertEquals(afterAccessContexts.get(1).getRemovedEntriesCount(), 3);
+        Assert.assertEquals(afterAccessContexts.get(1).getPartitionKey(), account.homeAccountId());
+
+        // nothing left to remove
+        Assert.assertFalse(afterAccessContexts.get(2).isCacheChanged());
+        Assert.assertEquals(afterAccessContexts.get(2).getRemovedEntriesCount(), 0);
+    }
+
+    @Test
+    public void accessTokenScopeMatchingTest() {
+        TokenCache tokenCache = new TokenCache(null);
+        AccessTokenCacheEntity accessToken = new AccessTokenCacheEntity();
+        accessToken.target("Calendars.Read openid profile User.Read");
+
+        Assert.assertTrue(tokenCache.isMatchingScopes(accessToken,
+                new HashSet<>(Arrays.asList("user.read", "calendars.read"))));
+        Assert.assertFalse(tokenCache.isMatchingScopes(accessToken, Collections.singleton("Mail.Read")));
+
+        accessToken.target("Mail.Read");
+
+        Assert.assertTrue(tokenCache.isMatchingScopes(accessToken, Collections.singleton("Mail.Read")));
+        Assert.assertFalse(tokenCache.isMatchingScopes(accessToken, Collections.singleton("User.Read")));
+    }
+
+    @Test
+    public void applicationAccessTokenLookupTest() throws IOException {
+        String clientId = "b6c69a37-df96-4db0-9088-2ab96e1d8215";
+        String tenant = "f645ad92-e38d-4d1a-b510-d1b09a74a8ca";
+        long expiresOn = System.currentTimeMillis() / 1000 + 3600;
+
+        String cache = "{\"AccessToken\": {\"key\": {" +
+                "\"credential_type\": \"AccessToken\"," +
+                "\"realm\": \"" + tenant + "\"," +
+                "\"target\": \"https://graph.microsoft.com/.default\"," +
+                "\"cached_at\": \"" + (expiresOn - 3600) + "\"," +
+                "\"expires_on\": \"" + expiresOn + "\"," +
+                "\"environment\": \"login.microsoftonline.com\"," +
+                "\"client_id\": \"" + clientId + "\"," +
+                "\"secret\": \"app_token\"}}}";
+
+        TokenCache tokenCache = new TokenCache(null);
+        tokenCache.deserializeAndLoadToCache(cache);
+
+        Authority authority = new AADAuthority(new URL("https://login.microsoftonline.com/" + tenant + "/"));
+        Set<String> scopes = Collections.singleton("https://graph.microsoft.com/.default");
+        Set<String> environmentAliases = Collections.singleton("login.microsoftonline.com");
+
+        Optional<AccessTokenCacheEntity> accessToken = tokenCache.getApplicationAccessTokenCacheEntity
+                (authority, scopes, clientId, environmentAliases);
+        Assert.assertTrue(accessToken.isPresent());
+        Assert.assertEquals(accessToken.get().secret(), "app_token");
+
+        Authority otherTenantAuthority = new AADAuthority(new URL("https://login.microsoftonline.com/other_tenant/"));
+        Assert.assertFalse(tokenCache.getApplicationAccessTokenCacheEntity
+                (otherTenantAuthority, scopes, clientId, environmentAliases).isPresent());
+
+        Assert.assertFalse(tokenCache.getApplicationAccessTokenCacheEntity
+                (authority, Collections.singleton("User.Read"), clientId, environmentAliases).isPresent());
+    }
+
+    @Test
+    public void extendedLifetimeAccessTokenLookupTest() throws IOException, URISyntaxException {
+        TokenCache tokenCache = new TokenCache(null);
+        tokenCache.deserializeAndLoadToCache(readResource("/cache_data/serialized_cache.json"));
+
+        Account account = tokenCache.accounts.values().iterator().next();
+        String clientId = "b6c69a37-df96-4db0-9088-2ab96e1d8215";
+        Authority authority = new AADAuthority(new URL("https://login.microsoftonline.com/" + account.realm() + "/"));
+        Set<String> scopes = Collections.singleton("User.Read");
+        Set<String> environmentAliases = new HashSet<>(
+                Arrays.asList("login.microsoftonline.com", "login.windows.net"));
+
+        // cached access token is expired, but within its extended lifetime
+        long currTimestampSec = System.currentTimeMillis() / 1000;
+        AccessTokenCacheEntity accessToken = tokenCache.accessTokens.values().iterator().next();
+        accessToken.expiresOn(Long.toString(currTimestampSec - 60));
+        accessToken.extExpiresOn(Long.toString(currTimestampSec + 3600));
+
+        Assert.assertNull(tokenCache.getAuthenticationResult
+                (account, authority, scopes, clientId, environmentAliases).accessToken());
+
+        AuthenticationResult result =
+                tokenCache.getExtendedLifetimeAuthenticationResult
+                        (account, authority, scopes, clientId, environmentAliases);
+        Assert.assertEquals(result.accessToken(), accessToken.secret());
+        Assert.assertEquals(result.extExpiresOn(), currTimestampSec + 3600);
+        Assert.assertNotNull(result.refreshToken());
+
+        accessToken.extExpiresOn(Long.toString(currTimestampSec - 60));
+
+        Assert.assertNull(tokenCache.getExtendedLifetimeAuthenticationResult
+                (account, authority, scopes, clientId, environmentAliases).accessToken());
+    }
+
+    @Test
+    public void nullCacheEntriesSkippedTest() throws IOException, URISyntaxException, JSONException {
+        TokenCache tokenCache = new TokenCache(null);
+        tokenCache.deserializeAndLoadToCache(
+                "{\"AccessToken\":{\"key\":null},\"RefreshToken\":{\"key\":null},\"Account\":{\"key\":null}}");
+
+        Assert.assertTrue(tokenCache.accessTokens.isEmpty());
+        Assert.assertTrue(tokenCache.refreshTokens.isEmpty());
+        Assert.assertTrue(tokenCache.accounts.isEmpty());
+    }
+
+    @Test
+    public void concurrentCacheUpdatesTest() throws Exception {
+        String clientId = "client_id";
+        String environment = "login.microsoftonline.com";
+        Set<String> environmentAliases = Collections.singleton(environment);
+
+        TokenRequest request = createAuthorizationCodeTokenRequest(clientId);
+
+        int accountCount = 8;
+        int iterations = 200;
+        TokenCache tokenCache = new TokenCache(null);
+        ExecutorService executor = Executors.newFixedThreadPool(accountCount + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < accountCount; i++) {
+                Account account = new Account();
+                account.homeAccountId = "uid" + i + ".utid";
+                account.realm = "tenant";
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < iterations; j++) {
+                        AuthenticationResult result = AuthenticationResult.builder().
+                                accessToken("at_" + account.homeAccountId + "_" + j).
+                                refreshToken("rt_" + account.homeAccountId + "_" + j).
+                                scopes("User.Read").
+                                expiresOn(System.currentTimeMillis() / 1000 + 3600).
+                                account(account).
+                                build();
+                        tokenCache.saveTokens(request, result, environment);
+                        if (j % 2 == 0) {
+                            tokenCache.removeAccount(clientId, account, environmentAliases);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    new TokenCache(null).deserializeAndLoadToCache(tokenCache.serialize());
+                }
+                return null;
+            }));
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // last iteration of each account saved tokens without removing them
+        Assert.assertEquals(tokenCache.accessTokens.size(), accountCount);
+        Assert.assertEquals(tokenCache.refreshTokens.size(), accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            Account account = new Account();
+            account.homeAccountId = "uid" + i + ".utid";
+            Optional<RefreshTokenCacheEntity> refreshToken =
+                    tokenCache.getRefreshTokenCacheEntity(account, clientId, environmentAliases);
+            Assert.assertTrue(refreshToken.isPresent());
+            Assert.assertEquals(refreshToken.get().secret(), "rt_" + account.homeAccountId + "_" + (iterations - 1));
+        }
+
+        TokenCache reloadedCache = new TokenCache(null);
+        reloadedCache.deserializeAndLoadToCache(tokenCache.serialize());
+        Assert.assertEquals(reloadedCache.accessTokens.keySet(), tokenCache.accessTokens.keySet());
+        Assert.assertEquals(reloadedCache.refreshTokens.keySet(), tokenCache.refreshTokens.keySet());
+    }
+
+    @Test
+    public void accessTokenRealmWithoutIdTokenTest() throws Exception {
+        TokenRequest request = createAuthorizationCodeTokenRequest("client_id");
+        long expiresOn = System.currentTimeMillis() / 1000 + 3600;
+
+        Account account = new Account();
+        account.homeAccountId = "uid.utid";
+        AuthenticationResult userResult = AuthenticationResult.builder().
+                accessToken("user_at").scopes("User.Read").expiresOn(expiresOn).account(account).build();
+        AuthenticationResult appResult = AuthenticationResult.builder().
+                accessToken("app_at").scopes("User.Read").expiresOn(expiresOn).build();
+
+        // realm of user tokens comes only from their id token
+        Assert.assertNull(TokenCache.createAccessTokenCacheEntity(request, userResult, "login.microsoftonline.com")
+                .realm());
+        Assert.assertEquals(TokenCache.createAccessTokenCacheEntity(request, appResult, "login.microsoftonline.com")
+                .realm(), "tenant");
+    }
+
+    private static TokenRequest createAuthorizationCodeTokenRequest(String clientId) throws Exception {
+        PublicClientApplication app = new PublicClientApplication.Builder(clientId)
+                .authority("https://login.microsoftonline.com/tenant/")
+                .build();
+        MsalRequest msalRequest = new AuthorizationCodeRequest(
+                AuthorizationCodeParameters.builder("code", new URI("http://my.redirect.com")).build(),
+                app,
+                new RequestContext(clientId, "correlation_id",
+                        AcquireTokenPublicApi.ACQUIRE_TOKEN_BY_AUTHORIZATION_CODE));
+        return new TokenRequest(new URL("https://login.microsoftonline.com/tenant/"),
+                msalRequest, new ServiceBundle(null, null, null, null));
+    }
+
+    @Test
+    public void onBehalfOfResultCacheTest() {
+        TokenCache tokenCache = new TokenCache(null);
+        long currTimestampSec = System.currentTimeMillis() / 1000;
+
+        AuthenticationResult validResult = AuthenticationResult.builder().
+                accessToken("obo_token").
+                expiresOn(currTimestampSec + 3600).
+                build();
+        tokenCache.saveOnBehalfOfAuthenticationResult("valid_key", validResult);
+
+        AuthenticationResult expiringResult = AuthenticationResult.builder().
+                accessToken("expiring_obo_token").
+                expiresOn(currTimestampSec + 60).
+                build();
+        tokenCache.saveOnBehalfOfAuthenticationResult("expiring_key", expiringResult);
+
+        Assert.assertEquals(tokenCache.getOnBehalfOfAuthenticationResult("valid_key"), validResult);
+        Assert.assertNull(tokenCache.getOnBehalfOfAuthenticationResult("expiring_key"));
+        Assert.assertNull(tokenCache.getOnBehalfOfAuthenticationResult("unknown_key"));
+    }
+
     String readResource(String resource) throws IOException, URISyntaxException {
         return new String(
                 Files.readAllBytes(
@@ -180,12 +591,9 @@ public class CacheTests extends AbstractMsalTests {
         EasyMock.expect(msalOAuthHttpRequest.send()).andReturn(httpResponse).times(1);
         EasyMock.expect(httpResponse.getHeaderValue(EasyMock.isA(String.class))).andReturn(null).times(3);
         EasyMock.expect(httpResponse.getStatusCode()).andReturn(200).times(2);
-        EasyMock.expect(httpResponse.getContentAsJSONObject())
-                .andReturn(
-                        JSONObjectUtils.parse(tokenResponse))
+        EasyMock.expect(httpResponse.getContent())
+                .andReturn(tokenResponse)
                 .times(1);
-        httpResponse.ensureStatusCode(200);
-        EasyMock.expectLastCall();
 
         PowerMock.replay(request, msalOAuthHttpRequest, httpResponse);
 
@@ -0,0 +1,124 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.FileInputStream;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Test(groups = { "checkin" })
+public class ClientAssertionProviderTest {
+
+    private static Supplier<ClientAssertion> countingSigner(AtomicInteger signatures) {
+        return () -> new ClientAssertion("assertion" + signatures.incrementAndGet());
+    }
+
+    @Test
+    public void assertionReusedUntilExpiringTest() {
+        AtomicInteger signatures = new AtomicInteger();
+        ClientAssertionProvider provider = new ClientAssertionProvider(
+                countingSigner(signatures), TimeUnit.MINUTES.toMillis(10), ClientAssertionProvider.RESIGN_AHEAD_MS);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(provider.getClientAssertion().getAssertion(), "assertion1");
+        }
+        Assert.assertEquals(signatures.get(), 1);
+    }
+
+    @Test
+    public void assertionResignedInBackgroundTest() throws Exception {
+        AtomicInteger signatures = new AtomicInteger();
+        // re-signed in background right after construction
+        ClientAssertionProvider provider = new ClientAssertionProvider(
+                countingSigner(signatures), TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(10));
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (signatures.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(signatures.get() >= 2);
+        Assert.assertNotEquals(provider.getClientAssertion().getAssertion(), "assertion1");
+    }
+
+    @Test
+    public void expiredAssertionResignedOnRequestTest() {
+        AtomicInteger signatures = new AtomicInteger();
+        ClientAssertionProvider provider = new ClientAssertionProvider(
+                countingSigner(signatures), 0, TimeUnit.MINUTES.toMillis(10));
+
+        String assertion = provider.getClientAssertion().getAssertion();
+        Assert.assertNotEquals(assertion, "assertion1");
+    }
+
+    @Test
+    public void assertionResignedOnRequestWithoutBackgroundTest() throws Exception {
+        AtomicInteger signatures = new AtomicInteger();
+        // would be re-signed in background right after construction
+        ClientAssertionProvider provider = new ClientAssertionProvider(
+                countingSigner(signatures), TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(5), false);
+
+        Thread.sleep(100);
+        Assert.assertEquals(signatures.get(), 1);
+        Assert.assertEquals(provider.getClientAssertion().getAssertion(), "assertion1");
+
+        // assertion within the re-sign period is re-signed by the request
+        provider = new ClientAssertionProvider(
+                countingSigner(signatures), TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(10), false);
+
+        Thread.sleep(100);
+        Assert.assertEquals(signatures.get(), 2);
+        Assert.assertEquals(provider.getClientAssertion().getAssertion(), "assertion3");
+    }
+
+    @Test
+    public void signedWithCertificateTest() throws Exception {
+        final KeyStore keystore = KeyStore.getInstance("PKCS12", "SunJSSE");
+        keystore.load(
+                new FileInputStream(this.getClass()
+                        .getResource(TestConfiguration.AAD_CERTIFICATE_PATH)
+                        .getFile()),
+                TestConfiguration.AAD_CERTIFICATE_PASSWORD.toCharArray());
+        final String alias = keystore.aliases().nextElement();
+        final PrivateKey key = (PrivateKey) keystore.getKey(alias,
+                TestConfiguration.AAD_CERTIFICATE_PASSWORD.toCharArray());
+        final X509Certificate cert = (X509Certificate) keystore
+                .getCertificate(alias);
+
+        ClientAssertionProvider provider = new ClientAssertionProvider(
+                TestConfiguration.AAD_CLIENT_ID,
+                AsymmetricKeyCredential.create(key, cert),
+                "https://login.microsoftonline.com/common/oauth2/v2.0/token");
+
+        ClientAssertion assertion = provider.getClientAssertion();
+        Assert.assertEquals(assertion.getAssertion().split("\\.").length, 3);
+        Assert.assertSame(provider.getClientAssertion(), assertion);
+    }
+}
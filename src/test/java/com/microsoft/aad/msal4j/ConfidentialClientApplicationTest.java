@@ -38,6 +38,7 @@ import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import static org.testng.Assert.assertFalse;
@@ -54,20 +55,20 @@ public class ConfidentialClientApplicationTest extends PowerMockTestCase {
     @Test
     public void testAcquireTokenAuthCode_ClientCredential() throws Exception {
         app = PowerMock.createPartialMock(ConfidentialClientApplication.class,
-                new String[] { "acquireTokenCommon" },
+                new String[] { "acquireTokenCommonAsync" },
                 new ConfidentialClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID,
                 ClientCredentialFactory.create(TestConfiguration.AAD_CLIENT_SECRET))
                         .authority(TestConfiguration.AAD_TENANT_ENDPOINT)
         );
 
-        PowerMock.expectPrivate(app, "acquireTokenCommon",
+        PowerMock.expectPrivate(app, "acquireTokenCommonAsync",
                 EasyMock.isA(MsalRequest.class),
-                EasyMock.isA(AADAuthority.class)).andReturn(
+                EasyMock.isA(AADAuthority.class)).andReturn(CompletableFuture.completedFuture(
                 AuthenticationResult.builder().
                         accessToken("accessToken").
                         expiresOn(new Date().getTime() + 100).
                         refreshToken("refreshToken").
-                        idToken("idToken").environment("environment").build());
+                        idToken("idToken").environment("environment").build()));
 
         PowerMock.replay(app);
 
@@ -101,18 +102,18 @@ public class ConfidentialClientApplicationTest extends PowerMockTestCase {
         IClientCredential clientCredential =  ClientCredentialFactory.create(key, cert);
 
         app = PowerMock.createPartialMock(ConfidentialClientApplication.class,
-                new String[] { "acquireTokenCommon" },
+                new String[] { "acquireTokenCommonAsync" },
                 new ConfidentialClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID, clientCredential)
                         .authority(TestConfiguration.AAD_TENANT_ENDPOINT));
 
-        PowerMock.expectPrivate(app, "acquireTokenCommon",
+        PowerMock.expectPrivate(app, "acquireTokenCommonAsync",
                 EasyMock.isA(MsalRequest.class),
-                EasyMock.isA(AADAuthority.class)).andReturn(
+                EasyMock.isA(AADAuthority.class)).andReturn(CompletableFuture.completedFuture(
                 AuthenticationResult.builder().
                         accessToken("accessToken").
                         expiresOn(new Date().getTime() + 100).
                         refreshToken("refreshToken").
-                        idToken("idToken").environment("environment").build());
+                        idToken("idToken").environment("environment").build()));
 
         PowerMock.replay(app);
 
@@ -146,18 +147,18 @@ public class ConfidentialClientApplicationTest extends PowerMockTestCase {
         IClientCredential clientCredential =  ClientCredentialFactory.create(key, cert);
 
         app = PowerMock.createPartialMock(ConfidentialClientApplication.class,
-                new String[] { "acquireTokenCommon" },
+                new String[] { "acquireTokenCommonAsync" },
                 new ConfidentialClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID, clientCredential)
                         .authority(TestConfiguration.AAD_TENANT_ENDPOINT));
 
-        PowerMock.expectPrivate(app, "acquireTokenCommon",
+        PowerMock.expectPrivate(app, "acquireTokenCommonAsync",
                 EasyMock.isA(MsalRequest.class),
-                EasyMock.isA(AADAuthority.class)).andReturn(
+                EasyMock.isA(AADAuthority.class)).andReturn(CompletableFuture.completedFuture(
                 AuthenticationResult.builder().
                         accessToken("accessToken").
                         expiresOn(new Date().getTime() + 100).
                         refreshToken("refreshToken").
-                        idToken("idToken").environment("environment").build());
+                        idToken("idToken").environment("environment").build()));
 
         PowerMock.replay(app);
 
@@ -173,4 +174,43 @@ public class ConfidentialClientApplicationTest extends PowerMockTestCase {
         PowerMock.verifyAll();
         PowerMock.resetAll(app);
     }
+
+    @Test
+    public void testRequestAuthorityOverride() throws Exception {
+        String jwt = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.eyJzdWIiOiIxMjM0NTY3ODkwIiwibmFtZSI6Ikpva" +
+                "G4gRG9lIiwiYWRtaW4iOnRydWV9.TJVA95OrM7E2cBab30RMHrHDcEfxjoYZgeFONFh7HgQ";
+        ConfidentialClientApplication cca = ConfidentialClientApplication.builder(
+                TestConfiguration.AAD_CLIENT_ID,
+                ClientCredentialFactory.create(TestConfiguration.AAD_CLIENT_SECRET))
+                .authority("https://login.microsoftonline.com/common/")
+                .build();
+
+        ClientCredentialRequest defaultRequest = new ClientCredentialRequest(
+                ClientCredentialParameters.builder(Collections.singleton("scope")).build(),
+                cca,
+                cca.createRequestContext(AcquireTokenPublicApi.ACQUIRE_TOKEN_FOR_CLIENT));
+        Assert.assertSame(defaultRequest.requestAuthority(), cca.authenticationAuthority);
+
+        ClientCredentialRequest tenantRequest = new ClientCredentialRequest(
+                ClientCredentialParameters.builder(Collections.singleton("scope")).
+                        tenant("contoso.onmicrosoft.com").
+                        build(),
+                cca,
+                cca.createRequestContext(AcquireTokenPublicApi.ACQUIRE_TOKEN_FOR_CLIENT));
+        Assert.assertEquals(tenantRequest.requestAuthority().authority(),
+                "https://login.microsoftonline.com/contoso.onmicrosoft.com/");
+        Assert.assertEquals(tenantRequest.requestAuthority().selfSignedJwtAudience(),
+                "https://login.microsoftonline.com/contoso.onmicrosoft.com/oauth2/v2.0/token");
+        Assert.assertNotEquals(tenantRequest.deduplicationKey(), defaultRequest.deduplicationKey());
+
+        OnBehalfOfRequest oboRequest = new OnBehalfOfRequest(
+                OnBehalfOfParameters.builder(Collections.singleton("scope"), new UserAssertion(jwt)).
+                        authorityUrl("https://login.microsoftonline.com/fabrikam.onmicrosoft.com/").
+                        tenant("contoso.onmicrosoft.com").
+                        build(),
+                cca,
+                cca.createRequestContext(AcquireTokenPublicApi.ACQUIRE_TOKEN_ON_BEHALF_OF));
+        Assert.assertEquals(oboRequest.requestAuthority().tenant(), "fabrikam.onmicrosoft.com");
+        Assert.assertTrue(oboRequest.getCacheKey().contains("fabrikam.onmicrosoft.com"));
+    }
 }
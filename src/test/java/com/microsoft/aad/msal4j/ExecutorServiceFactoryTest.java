@@ -0,0 +1,57 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Test(groups = { "checkin" })
+public class ExecutorServiceFactoryTest {
+
+    @Test
+    public void testCreateVirtualThreadPerTaskExecutor_RunsTasks() throws Exception {
+        ExecutorService executor = ExecutorServiceFactory.createVirtualThreadPerTaskExecutor();
+        try {
+            Assert.assertEquals(executor.submit(() -> "done").get(1, TimeUnit.SECONDS), "done");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCreateBoundedPlatformThreadExecutor_BoundedDaemonThreads() throws Exception {
+        ThreadPoolExecutor executor =
+                (ThreadPoolExecutor) ExecutorServiceFactory.createBoundedPlatformThreadExecutor();
+        try {
+            Assert.assertEquals(executor.getMaximumPoolSize(), ExecutorServiceFactory.MAX_PLATFORM_THREADS);
+            Assert.assertTrue(executor.submit(() -> Thread.currentThread().isDaemon()).get(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
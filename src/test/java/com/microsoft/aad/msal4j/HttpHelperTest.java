@@ -23,14 +23,15 @@
 
 package com.microsoft.aad.msal4j;
 
-import org.easymock.EasyMock;
-import org.powermock.api.easymock.PowerMock;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
 import org.testng.annotations.Test;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 /**
  *
@@ -41,22 +42,15 @@ public class HttpHelperTest extends AbstractMsalTests {
 
     @Test(expectedExceptions = AuthenticationException.class,
             expectedExceptionsMessageRegExp = "Server returned HTTP response code: 403 for URL : https://some.url, Error details : error info")
-    public void testReadResponseFromConnection_ResponseCodeNot200()
+    public void testReadResponse_ResponseCodeNot200()
             throws Exception {
-        final HttpsURLConnection connection = PowerMock
-                .createMock(HttpsURLConnection.class);
-        EasyMock.expect(connection.getResponseCode()).andReturn(403).times(2);
-        EasyMock.expect(connection.getURL()).andReturn(new URL("https://some.url"));
+        final HttpResponse httpResponse =
+                new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 403, null));
 
         String testInput = "error info";
-        //StringReader reader = new StringReader(testInput);
-        InputStream is = new ByteArrayInputStream(testInput.getBytes());
-
-        EasyMock.expect(connection.getErrorStream()).andReturn(is).times(1);
-
-        PowerMock.replayAll(connection);
+        httpResponse.setEntity(new StringEntity(testInput, StandardCharsets.UTF_8));
 
         HttpEvent httpEvent = new HttpEvent();
-        HttpHelper.readResponseFromConnection(connection, httpEvent);
+        HttpHelper.readResponse(httpResponse, new URL("https://some.url"), httpEvent);
     }
 }
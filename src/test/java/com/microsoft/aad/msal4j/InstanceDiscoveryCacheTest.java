@@ -0,0 +1,200 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test(groups = { "checkin" })
+public class InstanceDiscoveryCacheTest {
+
+    private static final String HOST = "login.microsoftonline.com";
+
+    private static InstanceDiscoveryMetadataEntry createEntry(String preferredNetwork) {
+        return InstanceDiscoveryMetadataEntry.builder().
+                preferredNetwork(preferredNetwork).
+                preferredCache(HOST).
+                aliases(new String[]{HOST}).
+                build();
+    }
+
+    private static InstanceDiscoveryMetadataEntry discoverEntry(InstanceDiscoveryCache cache, String host) {
+        InstanceDiscoveryMetadataEntry entry = createEntry(host);
+        cache.put(host, entry);
+        return entry;
+    }
+
+    @Test
+    public void concurrentDiscoveriesCoalescedTest() throws Exception {
+        InstanceDiscoveryCache cache = new InstanceDiscoveryCache();
+        AtomicInteger discoveries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        InstanceDiscoveryCache.Discovery discovery = () -> {
+            discoveries.incrementAndGet();
+            release.await();
+            return discoverEntry(cache, HOST);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<InstanceDiscoveryMetadataEntry>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.getOrDiscover(HOST, HOST, discovery, Runnable::run)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<InstanceDiscoveryMetadataEntry> result : results) {
+                Assert.assertEquals(result.get(1, TimeUnit.SECONDS).getPreferredNetwork(), HOST);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(discoveries.get(), 1);
+    }
+
+    @Test
+    public void expiredMetadataRefreshedInBackgroundTest() throws Exception {
+        InstanceDiscoveryCache cache = new InstanceDiscoveryCache(InstanceDiscoveryCache.DEFAULT_MAX_ENTRIES, 0, 0);
+        cache.put(HOST, createEntry("stale.host"));
+
+        List<Runnable> scheduled = new ArrayList<>();
+        InstanceDiscoveryMetadataEntry entry = cache.getOrDiscover(
+                HOST, HOST, () -> discoverEntry(cache, HOST), scheduled::add);
+
+        Assert.assertEquals(entry.getPreferredNetwork(), "stale.host");
+        Assert.assertEquals(scheduled.size(), 1);
+
+        // refresh is already in progress
+        cache.getOrDiscover(HOST, HOST, () -> discoverEntry(cache, HOST), scheduled::add);
+        Assert.assertEquals(scheduled.size(), 1);
+
+        scheduled.get(0).run();
+        Assert.assertEquals(cache.get(HOST).getPreferredNetwork(), HOST);
+    }
+
+    @Test
+    public void failedDiscoveryCachedTest() throws Exception {
+        InstanceDiscoveryCache cache = new InstanceDiscoveryCache(InstanceDiscoveryCache.DEFAULT_MAX_ENTRIES,
+                InstanceDiscoveryCache.DEFAULT_TTL_MS, TimeUnit.MINUTES.toMillis(1));
+        AtomicInteger discoveries = new AtomicInteger();
+
+        InstanceDiscoveryCache.Discovery discovery = () -> {
+            discoveries.incrementAndGet();
+            throw new AuthenticationException("discovery failed");
+        };
+
+        List<Exception> failures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getOrDiscover(HOST, HOST, discovery, Runnable::run);
+                Assert.fail("Expected AuthenticationException");
+            } catch (AuthenticationException ex) {
+                Assert.assertEquals(ex.getMessage(), "discovery failed");
+                failures.add(ex);
+            }
+        }
+        Assert.assertEquals(discoveries.get(), 1);
+
+        // each caller gets its own exception caused by the discovery failure
+        Assert.assertNotSame(failures.get(0), failures.get(1));
+        Assert.assertSame(failures.get(0).getCause(), failures.get(1).getCause());
+    }
+
+    @Test
+    public void discoveredMetadataReturnedWhenNotCachedTest() throws Exception {
+        InstanceDiscoveryCache cache = new InstanceDiscoveryCache();
+
+        // metadata may be evicted or cached under another alias by the time the discovery returns
+        InstanceDiscoveryMetadataEntry entry = cache.getOrDiscover(HOST, HOST, () -> {
+            InstanceDiscoveryMetadataEntry discovered = createEntry(HOST);
+            cache.put("login.windows.net", discovered);
+            return discovered;
+        }, Runnable::run);
+
+        Assert.assertNull(cache.get(HOST));
+        Assert.assertEquals(entry.getPreferredNetwork(), HOST);
+    }
+
+    @Test
+    public void sizeLimitAndMetricsTest() throws Exception {
+        InstanceDiscoveryCache cache = new InstanceDiscoveryCache(2, 1, TimeUnit.HOURS);
+        cache.put("host1", createEntry("host1"));
+        cache.put("host2", createEntry("host2"));
+        cache.put("host3", createEntry("host3"));
+
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.evictionCount(), 1);
+
+        Assert.assertNotNull(cache.getOrDiscover("host3", "host3",
+                () -> { throw new AssertionError("Unexpected discovery"); }, Runnable::run));
+        Assert.assertEquals(cache.hitCount(), 1);
+
+        cache.getOrDiscover("host4", "host4", () -> discoverEntry(cache, "host4"), Runnable::run);
+        Assert.assertEquals(cache.discoveryCount(), 1);
+        Assert.assertEquals(cache.discoveryFailureCount(), 0);
+        Assert.assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void serializeAndLoadTest() throws Exception {
+        InstanceDiscoveryCache cache = new InstanceDiscoveryCache();
+        InstanceDiscoveryMetadataEntry entry = InstanceDiscoveryMetadataEntry.builder().
+                preferredNetwork(HOST).
+                preferredCache("login.windows.net").
+                aliases(new String[]{HOST, "login.windows.net"}).
+                build();
+        cache.put(HOST, entry);
+        cache.put("login.windows.net", entry);
+
+        InstanceDiscoveryCache loadedCache = new InstanceDiscoveryCache();
+        loadedCache.deserializeAndLoad(cache.serialize());
+
+        Assert.assertEquals(loadedCache.get(HOST).getPreferredCache(), "login.windows.net");
+        Assert.assertEquals(loadedCache.get("login.windows.net").getPreferredNetwork(), HOST);
+        Assert.assertNull(loadedCache.get("login.chinacloudapi.cn"));
+
+        // loaded metadata is used without discovery
+        Assert.assertEquals(loadedCache.getOrDiscover(HOST, HOST,
+                () -> { throw new AssertionError("Unexpected discovery"); }, Runnable::run).getPreferredNetwork(), HOST);
+    }
+
+    @Test
+    public void loadDiscoveryResponseTest() {
+        InstanceDiscoveryCache cache = new InstanceDiscoveryCache();
+        cache.deserializeAndLoad(TestConfiguration.INSTANCE_DISCOVERY_RESPONSE);
+
+        Assert.assertNotNull(cache.get(HOST));
+    }
+}
@@ -0,0 +1,151 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.msal4j;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+@Test(groups = { "checkin" })
+public class MappedSecretStoreTest {
+
+    @Test
+    public void writeReadAcrossChunksTest() throws IOException {
+        Path file = Files.createTempFile("msal4j-secrets", ".bin");
+        try (MappedSecretStore store = new MappedSecretStore(file, 16)) {
+            long first = store.write("secret1");
+            // does not fit in the rest of the first chunk
+            long second = store.write("secret2");
+            long third = store.write("");
+
+            Assert.assertEquals(first, 0);
+            Assert.assertEquals(second, 16);
+            Assert.assertEquals(store.read(first), "secret1");
+            Assert.assertEquals(store.read(second), "secret2");
+            Assert.assertEquals(store.read(third), "");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void secretLargerThanChunkTest() throws IOException {
+        Path file = Files.createTempFile("msal4j-secrets", ".bin");
+        try (MappedSecretStore store = new MappedSecretStore(file, 16)) {
+            store.write("secret larger than chunk");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void compactionTest() throws IOException {
+        Path file = Files.createTempFile("msal4j-secrets", ".bin");
+        try (MappedSecretStore store = new MappedSecretStore(file, 16)) {
+            Credential released = new Credential();
+            released.secret("released1234");
+            released.moveSecretTo(store);
+            Credential kept = new Credential();
+            kept.secret("kept");
+            kept.moveSecretTo(store);
+
+            Assert.assertFalse(store.shouldCompact());
+            released.releaseSecret();
+            Assert.assertTrue(store.shouldCompact());
+
+            store.clear();
+            kept.rewriteSecret();
+
+            Assert.assertEquals(kept.secretLocation(), 0);
+            Assert.assertEquals(kept.secret(), "kept");
+            Assert.assertFalse(store.shouldCompact());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void nonEmptyFileNotOverwrittenTest() throws IOException {
+        Path file = Files.createTempFile("msal4j-secrets", ".bin");
+        try {
+            Files.write(file, "content".getBytes(StandardCharsets.UTF_8));
+            try {
+                new MappedSecretStore(file, 16);
+                Assert.fail("Expected FileAlreadyExistsException");
+            } catch (FileAlreadyExistsException ex) {
+                Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "content");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void fileOwnerOnlyAndDeletedOnCloseTest() throws IOException {
+        Path directory = Files.createTempDirectory("msal4j-secrets");
+        Path file = directory.resolve("secrets.bin");
+        try {
+            MappedSecretStore store = new MappedSecretStore(file, 16);
+            long location = store.write("secret");
+            if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Assert.assertEquals(Files.getPosixFilePermissions(file), PosixFilePermissions.fromString("rw-------"));
+            }
+
+            store.close();
+
+            Assert.assertFalse(Files.exists(file));
+            try {
+                store.read(location);
+                Assert.fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // secrets can not be read once the store is closed
+            }
+            // closing again has no effect
+            store.close();
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void fileDeletedWhenApplicationClosedTest() throws IOException {
+        Path file = Files.createTempFile("msal4j-secrets", ".bin");
+        try {
+            PublicClientApplication app = new PublicClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID).
+                    tokenCacheSecretsFile(file).
+                    build();
+            app.close();
+
+            Assert.assertFalse(Files.exists(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
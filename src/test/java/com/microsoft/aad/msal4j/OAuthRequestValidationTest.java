@@ -34,6 +34,7 @@ import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -63,6 +64,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -108,6 +110,16 @@ public class OAuthRequestValidationTest extends PowerMockTestCase {
                         throw new AuthenticationException("");
                     }
                 });
+        replace(method(OAuthHttpRequest.class, "sendAsync")).
+                with(new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        OAuthRequestValidationTest.query = ((OAuthHttpRequest) proxy).getQuery();
+                        CompletableFuture<HTTPResponse> future = new CompletableFuture<>();
+                        future.completeExceptionally(new AuthenticationException(""));
+                        return future;
+                    }
+                });
     }
 
     public static Map<String, String> splitQuery(String query) throws UnsupportedEncodingException {
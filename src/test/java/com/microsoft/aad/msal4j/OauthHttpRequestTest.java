@@ -25,19 +25,25 @@ package com.microsoft.aad.msal4j;
 
 import com.nimbusds.oauth2.sdk.http.HTTPRequest.Method;
 import com.nimbusds.oauth2.sdk.http.HTTPResponse;
-import org.easymock.EasyMock;
-import org.powermock.api.easymock.PowerMock;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.reflect.Whitebox;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 
 import static org.testng.Assert.assertNotNull;
 
@@ -53,21 +59,20 @@ public class OauthHttpRequestTest extends AbstractMsalTests {
     }
 
 
+    private static HttpResponse createHttpResponse(int statusCode) {
+        return new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode, null));
+    }
+
     @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Couldn't parse Content-Type header: Invalid Content-Type value: In Content-Type string <invalid-content>, expected '/', got null")
     public void testCreateResponseContentTypeParsingFailure()
             throws Exception {
 
         final OAuthHttpRequest request = new OAuthHttpRequest(Method.GET,
                 new URL("https://" + TestConfiguration.AAD_HOST_NAME), null, null);
-        final HttpURLConnection conn = PowerMock
-                .createMock(HttpURLConnection.class);
-        EasyMock.expect(conn.getResponseCode()).andReturn(200).times(1);
-        EasyMock.expect(conn.getHeaderField("Location"))
-                .andReturn("https://location.pl").times(1);
-        EasyMock.expect(conn.getContentType()).andReturn("invalid-content")
-                .times(1);
-        PowerMock.replay(conn);
-        Whitebox.invokeMethod(request, "createResponse", conn, null);
+        final HttpResponse httpResponse = createHttpResponse(200);
+        httpResponse.setHeader("Location", "https://location.pl");
+        httpResponse.setHeader("Content-Type", "invalid-content");
+        Whitebox.invokeMethod(request, "createResponse", httpResponse, null);
     }
 
     @Test
@@ -75,23 +80,13 @@ public class OauthHttpRequestTest extends AbstractMsalTests {
             throws Exception {
         final OAuthHttpRequest request = new OAuthHttpRequest(Method.GET,
                 new URL("https://" + TestConfiguration.AAD_HOST_NAME), null, null);
-        final HttpURLConnection conn = PowerMock
-                .createMock(HttpURLConnection.class);
-        EasyMock.expect(conn.getResponseCode()).andReturn(200).times(1);
-        EasyMock.expect(conn.getHeaderField("Location")).andReturn(null)
-                .times(1);
-        EasyMock.expect(conn.getContentType())
-                .andReturn("application/x-www-form-urlencoded").times(1);
-        EasyMock.expect(conn.getHeaderField("Cache-Control")).andReturn("cc")
-                .times(1);
-        EasyMock.expect(conn.getHeaderField("Pragma")).andReturn("pragma")
-                .times(1);
-        EasyMock.expect(conn.getHeaderField("WWW-Authenticate"))
-                .andReturn("www-a").times(1);
-        PowerMock.replay(conn);
+        final HttpResponse httpResponse = createHttpResponse(200);
+        httpResponse.setHeader("Content-Type", "application/x-www-form-urlencoded");
+        httpResponse.setHeader("Cache-Control", "cc");
+        httpResponse.setHeader("Pragma", "pragma");
+        httpResponse.setHeader("WWW-Authenticate", "www-a");
         final HTTPResponse response = Whitebox.invokeMethod(request,
-                "createResponse", conn, "content");
-        PowerMock.verifyAll();
+                "createResponse", httpResponse, "content");
         Assert.assertNotNull(response);
         Assert.assertEquals(response.getCacheControl(), "cc");
         Assert.assertEquals(response.getPragma(), "pragma");
@@ -104,23 +99,14 @@ public class OauthHttpRequestTest extends AbstractMsalTests {
     public void testCreateResponse() throws Exception {
         final OAuthHttpRequest request = new OAuthHttpRequest(Method.GET,
                 new URL("https://" + TestConfiguration.AAD_HOST_NAME), null, null);
-        final HttpURLConnection conn = PowerMock
-                .createMock(HttpURLConnection.class);
-        EasyMock.expect(conn.getResponseCode()).andReturn(200).times(1);
-        EasyMock.expect(conn.getHeaderField("Location"))
-                .andReturn("https://location.pl").times(1);
-        EasyMock.expect(conn.getContentType())
-                .andReturn("application/x-www-form-urlencoded").times(1);
-        EasyMock.expect(conn.getHeaderField("Cache-Control")).andReturn("cc")
-                .times(1);
-        EasyMock.expect(conn.getHeaderField("Pragma")).andReturn("pragma")
-                .times(1);
-        EasyMock.expect(conn.getHeaderField("WWW-Authenticate"))
-                .andReturn("www-a").times(1);
-        PowerMock.replay(conn);
+        final HttpResponse httpResponse = createHttpResponse(200);
+        httpResponse.setHeader("Location", "https://location.pl");
+        httpResponse.setHeader("Content-Type", "application/x-www-form-urlencoded");
+        httpResponse.setHeader("Cache-Control", "cc");
+        httpResponse.setHeader("Pragma", "pragma");
+        httpResponse.setHeader("WWW-Authenticate", "www-a");
         final HTTPResponse response = Whitebox.invokeMethod(request,
-                "createResponse", conn, null);
-        PowerMock.verifyAll();
+                "createResponse", httpResponse, null);
         Assert.assertNotNull(response);
         Assert.assertEquals(response.getCacheControl(), "cc");
         Assert.assertEquals(response.getPragma(), "pragma");
@@ -135,18 +121,30 @@ public class OauthHttpRequestTest extends AbstractMsalTests {
     public void testCreateResponseFor404() throws Exception {
         final OAuthHttpRequest request = new OAuthHttpRequest(Method.GET,
                 new URL("https://" + TestConfiguration.AAD_HOST_NAME), null, null);
-        final HttpURLConnection conn = PowerMock
-                .createMock(HttpURLConnection.class);
-        EasyMock.expect(conn.getResponseCode()).andReturn(404);
-        EasyMock.expect(conn.getErrorStream()).andReturn(null);
-
-        InputStream stream = new ByteArrayInputStream("stream".getBytes());
-
-        EasyMock.expect(conn.getInputStream()).andReturn(stream);
-        PowerMock.replay(conn);
+        final HttpResponse httpResponse = createHttpResponse(404);
+        httpResponse.setEntity(new StringEntity("stream", StandardCharsets.UTF_8));
         final String response = Whitebox.invokeMethod(request,
-                "processAndReadResponse", conn);
+                "readResponse", httpResponse);
         Assert.assertEquals(response, "stream");
-        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void testToHttpRequest() throws Exception {
+        final OAuthHttpRequest request = new OAuthHttpRequest(Method.POST,
+                new URL("https://" + TestConfiguration.AAD_HOST_NAME + "/token"),
+                Collections.singletonMap(ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME, "correlation"),
+                null);
+        request.setQuery("grant_type=client_credentials");
+
+        final HttpUriRequest httpRequest = request.toHttpRequest();
+        Assert.assertEquals(httpRequest.getMethod(), "POST");
+        Assert.assertEquals(httpRequest.getURI().toString(),
+                "https://" + TestConfiguration.AAD_HOST_NAME + "/token");
+        Assert.assertEquals(httpRequest.getFirstHeader(ClientDataHttpHeaders.CORRELATION_ID_HEADER_NAME).getValue(),
+                "correlation");
+
+        final HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+        Assert.assertEquals(EntityUtils.toString(entity), "grant_type=client_credentials");
+        Assert.assertTrue(entity.getContentType().getValue().startsWith("application/x-www-form-urlencoded"));
     }
 }
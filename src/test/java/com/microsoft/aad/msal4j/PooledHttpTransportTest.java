@@ -0,0 +1,216 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@Test(groups = { "checkin" })
+public class PooledHttpTransportTest {
+
+    private static final String TOKEN_ENDPOINT = "https://login.microsoftonline.com/common/oauth2/v2.0/token";
+
+    /**
+     * Transport passing a successful response to handlers instead of sending requests
+     */
+    private static class StubPooledHttpTransport extends PooledHttpTransport {
+
+        StubPooledHttpTransport(int maxConnectionsPerHost) {
+            super(null, null, 100, 100, maxConnectionsPerHost);
+        }
+
+        @Override
+        <T> T send(HttpUriRequest request, ResponseHandler<T> handler) throws IOException {
+            return handler.handleResponse(
+                    new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK")));
+        }
+    }
+
+    private static String awaitRelease(CountDownLatch release, String result) {
+        try {
+            release.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    @Test
+    public void testPoolConfigured() {
+        PooledHttpTransport transport = new PooledHttpTransport(null, null, 1000, 2000, 5);
+        try {
+            Assert.assertEquals(transport.requestConfig().getConnectTimeout(), 1000);
+            Assert.assertEquals(transport.requestConfig().getConnectionRequestTimeout(), 1000);
+            Assert.assertEquals(transport.requestConfig().getSocketTimeout(), 2000);
+            Assert.assertEquals(transport.connectionManager().getDefaultMaxPerRoute(), 5);
+            Assert.assertEquals(transport.connectionManager().getMaxTotal(), 5 * PooledHttpTransport.MAX_POOLED_HOSTS);
+        } finally {
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecute_ConnectionReused() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "token".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        server.start();
+
+        PooledHttpTransport transport = new PooledHttpTransport(null, null, 1000, 1000, 1);
+        try {
+            URI uri = new URI("http", null, server.getAddress().getHostString(), server.getAddress().getPort(),
+                    "/token", null, null);
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(transport.execute(new HttpGet(uri),
+                        response -> EntityUtils.toString(response.getEntity())), "token");
+            }
+            // all requests are sent on the same pooled connection
+            Assert.assertEquals(clientPorts.size(), 3);
+            Assert.assertEquals(new HashSet<>(clientPorts).size(), 1);
+
+            transport.shutdown();
+            try {
+                transport.execute(new HttpGet(uri), response -> "closed");
+                Assert.fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // pool is shut down
+            }
+        } finally {
+            transport.shutdown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testExecute_ConnectionsPerHostLimited() throws Exception {
+        PooledHttpTransport transport = new StubPooledHttpTransport(1);
+
+        CountDownLatch connectionOpened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> pending = executor.submit(() -> transport.execute(new HttpGet(TOKEN_ENDPOINT), response -> {
+                connectionOpened.countDown();
+                return awaitRelease(release, "first");
+            }));
+            connectionOpened.await();
+
+            try {
+                transport.execute(new HttpGet(TOKEN_ENDPOINT), response -> "second");
+                Assert.fail("Expected SocketTimeoutException");
+            } catch (SocketTimeoutException ex) {
+                // limit of connections to the host reached
+            }
+            // other hosts are not affected
+            Assert.assertEquals(transport.execute(new HttpGet("https://login.windows.net"), response -> "other"), "other");
+
+            release.countDown();
+            Assert.assertEquals(pending.get(), "first");
+            Assert.assertEquals(transport.execute(new HttpGet(TOKEN_ENDPOINT), response -> "second"), "second");
+        } finally {
+            executor.shutdownNow();
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecuteAsync_RequestsQueuedWithoutBlocking() throws Exception {
+        PooledHttpTransport transport = new StubPooledHttpTransport(1);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = transport.executeAsync(new HttpGet(TOKEN_ENDPOINT),
+                response -> awaitRelease(release, "first"));
+        CompletableFuture<String> second = transport.executeAsync(new HttpGet(TOKEN_ENDPOINT), response -> "second");
+
+        Assert.assertFalse(second.isDone());
+
+        release.countDown();
+        Assert.assertEquals(first.get(1, TimeUnit.SECONDS), "first");
+        Assert.assertEquals(second.get(1, TimeUnit.SECONDS), "second");
+        transport.shutdown();
+    }
+
+    @Test
+    public void testExecuteAsync_IoThreadsBoundedAndShutDown() throws Exception {
+        PooledHttpTransport transport = new StubPooledHttpTransport(1);
+
+        Assert.assertEquals(transport.ioThreadLimit(), PooledHttpTransport.IO_THREAD_HOSTS);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = transport.executeAsync(new HttpGet(TOKEN_ENDPOINT),
+                response -> awaitRelease(release, "first"));
+        CompletableFuture<String> waiting = transport.executeAsync(new HttpGet(TOKEN_ENDPOINT), response -> "waiting");
+
+        transport.shutdown();
+
+        // request already passed to an I/O thread completes
+        release.countDown();
+        Assert.assertEquals(first.get(1, TimeUnit.SECONDS), "first");
+
+        for (CompletableFuture<String> rejected : Arrays.asList(
+                waiting, transport.executeAsync(new HttpGet(TOKEN_ENDPOINT), response -> "later"))) {
+            try {
+                rejected.get(1, TimeUnit.SECONDS);
+                Assert.fail("Expected RejectedExecutionException");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+            }
+        }
+    }
+}
@@ -23,17 +23,22 @@
 
 package com.microsoft.aad.msal4j;
 
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.powermock.api.easymock.PowerMock;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.testng.PowerMockTestCase;
+import org.powermock.reflect.Whitebox;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 @PowerMockIgnore({"javax.net.ssl.*"})
@@ -46,18 +51,18 @@ public class PublicClientApplicationTest extends PowerMockTestCase {
 
     public void testAcquireToken_Username_Password() throws Exception {
         app = PowerMock.createPartialMock(PublicClientApplication.class,
-                new String[] { "acquireTokenCommon" },
+                new String[] { "acquireTokenCommonAsync" },
                 new PublicClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID)
                         .authority(TestConfiguration.AAD_TENANT_ENDPOINT));
 
-        PowerMock.expectPrivate(app, "acquireTokenCommon",
+        PowerMock.expectPrivate(app, "acquireTokenCommonAsync",
                 EasyMock.isA(MsalRequest.class),
                 EasyMock.isA(AADAuthority.class))
-                .andReturn(AuthenticationResult.builder().
+                .andReturn(CompletableFuture.completedFuture(AuthenticationResult.builder().
                         accessToken("accessToken").
                         expiresOn(new Date().getTime() + 100).
                         refreshToken("refreshToken").
-                        idToken("idToken").environment("environment").build()
+                        idToken("idToken").environment("environment").build())
                 );
 
         UserDiscoveryResponse response = EasyMock
@@ -84,4 +89,72 @@ public class PublicClientApplicationTest extends PowerMockTestCase {
         PowerMock.verifyAll();
         PowerMock.resetAll(app);
     }
+
+    @Test
+    public void testAcquireTokenSilently_RefreshSentAsynchronously() throws Exception {
+        app = PowerMock.createPartialMock(PublicClientApplication.class,
+                new String[] { "acquireTokenCommonAsync" },
+                new PublicClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID)
+                        .authority(TestConfiguration.AAD_TENANT_ENDPOINT));
+
+        // cached metadata lets the authority be resolved without discovery request
+        app.getServiceBundle().getInstanceDiscoveryCache().put(TestConfiguration.AAD_HOST_NAME,
+                InstanceDiscoveryMetadataEntry.builder().
+                        preferredNetwork(TestConfiguration.AAD_HOST_NAME).
+                        preferredCache(TestConfiguration.AAD_HOST_NAME).
+                        aliases(new String[]{TestConfiguration.AAD_HOST_NAME}).
+                        build());
+
+        RefreshTokenCacheEntity refreshToken = new RefreshTokenCacheEntity();
+        refreshToken.homeAccountId("uid.utid");
+        refreshToken.environment(TestConfiguration.AAD_HOST_NAME);
+        refreshToken.clientId(TestConfiguration.AAD_CLIENT_ID);
+        refreshToken.secret("refreshToken");
+        app.tokenCache.deserializeAndLoadToCache("{\"RefreshToken\":{\"" + refreshToken.getKey() + "\":" +
+                JsonHelper.GSON.toJson(refreshToken) + "}}");
+
+        Capture<MsalRequest> refreshRequest = EasyMock.newCapture();
+        PowerMock.expectPrivate(app, "acquireTokenCommonAsync",
+                EasyMock.capture(refreshRequest),
+                EasyMock.isA(AADAuthority.class))
+                .andReturn(CompletableFuture.completedFuture(AuthenticationResult.builder().
+                        accessToken("accessToken").
+                        expiresOn(new Date().getTime() + 100).
+                        build()));
+        PowerMock.replay(app);
+
+        Account account = new Account();
+        account.homeAccountId = "uid.utid";
+        account.environment = TestConfiguration.AAD_HOST_NAME;
+        AuthenticationResult result = app.acquireTokenSilently(
+                SilentParameters.builder(Collections.singleton("User.Read"), account).build()).get();
+
+        Assert.assertEquals(result.accessToken(), "accessToken");
+        Assert.assertTrue(refreshRequest.getValue() instanceof RefreshTokenRequest);
+        PowerMock.verifyAll();
+    }
+
+    public void testClose_OwnedExecutorShutDown() {
+        PublicClientApplication virtualThreadsApp = new PublicClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID)
+                .useVirtualThreads(true)
+                .build();
+        ServiceBundle serviceBundle = Whitebox.getInternalState(virtualThreadsApp, "serviceBundle");
+        ExecutorService ownedExecutor = serviceBundle.getExecutorService();
+
+        virtualThreadsApp.close();
+        Assert.assertTrue(ownedExecutor.isShutdown());
+
+        // executor set by the developer is not shut down
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            PublicClientApplication executorApp = new PublicClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID)
+                    .executorService(executor)
+                    .useVirtualThreads(true)
+                    .build();
+            executorApp.close();
+            Assert.assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
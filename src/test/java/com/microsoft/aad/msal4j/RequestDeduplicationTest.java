@@ -0,0 +1,197 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.msal4j;
+
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.easymock.EasyMock;
+import org.powermock.reflect.Whitebox;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@Test(groups = { "checkin" })
+public class RequestDeduplicationTest {
+
+    private class DeferredExecutorService extends AbstractExecutorService {
+        List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> toRun = new ArrayList<>(tasks);
+            tasks.clear();
+            toRun.forEach(Runnable::run);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    /**
+     * Transport whose asynchronous requests are completed by the test, no request is sent
+     */
+    private class StubHttpTransport implements HttpTransport {
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+
+        @Override
+        public <T> T execute(HttpUriRequest request, ResponseHandler<T> handler) throws IOException {
+            throw new IOException("Unexpected synchronous request to " + request.getURI());
+        }
+
+        @Override
+        public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<T> handler) {
+            CompletableFuture<T> pending = new CompletableFuture<>();
+            requests.add(pending);
+            return pending;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private CompletableFuture<AuthenticationResult> acquireTokenForClient
+            (ConfidentialClientApplication app, String scope) {
+        return app.acquireToken(ClientCredentialParameters.builder(Collections.singleton(scope)).build());
+    }
+
+    private ConfidentialClientApplication createApplication(DeferredExecutorService executorService,
+                                                            HttpTransport httpTransport) throws Exception {
+        ConfidentialClientApplication app = ConfidentialClientApplication.builder(
+                TestConfiguration.AAD_CLIENT_ID,
+                ClientCredentialFactory.create(TestConfiguration.AAD_CLIENT_SECRET))
+                .authority(TestConfiguration.AAD_TENANT_ENDPOINT)
+                .executorService(executorService)
+                .build();
+
+        // cached metadata lets the authority be resolved without discovery request
+        InstanceDiscoveryCache instanceDiscoveryCache = new InstanceDiscoveryCache();
+        instanceDiscoveryCache.put(TestConfiguration.AAD_HOST_NAME, InstanceDiscoveryMetadataEntry.builder().
+                preferredNetwork(TestConfiguration.AAD_HOST_NAME).
+                preferredCache(TestConfiguration.AAD_HOST_NAME).
+                aliases(new String[]{TestConfiguration.AAD_HOST_NAME}).
+                build());
+        Whitebox.setInternalState(app, "serviceBundle", new ServiceBundle(
+                executorService,
+                null,
+                null,
+                new TelemetryManager(null, false),
+                httpTransport,
+                instanceDiscoveryCache));
+        return app;
+    }
+
+    public void concurrentEquivalentRequestsExecutedOnce() throws Exception {
+        DeferredExecutorService executorService = new DeferredExecutorService();
+        StubHttpTransport httpTransport = new StubHttpTransport();
+        ConfidentialClientApplication app = createApplication(executorService, httpTransport);
+
+        CompletableFuture<AuthenticationResult> first = acquireTokenForClient(app, "scope");
+        CompletableFuture<AuthenticationResult> second = acquireTokenForClient(app, "SCOPE");
+        Assert.assertEquals(executorService.tasks.size(), 1);
+
+        acquireTokenForClient(app, "other_scope");
+        Assert.assertEquals(executorService.tasks.size(), 2);
+
+        // cancelling one caller's future does not affect other callers
+        first.cancel(true);
+        Assert.assertFalse(second.isDone());
+
+        // one token request is sent for both callers
+        executorService.runAll();
+        Assert.assertEquals(httpTransport.requests.size(), 2);
+        Assert.assertFalse(second.isDone());
+
+        httpTransport.requests.get(0).completeExceptionally(new IOException("token request failed"));
+        try {
+            second.get(1, TimeUnit.SECONDS);
+            Assert.fail("Expected ExecutionException");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+
+        acquireTokenForClient(app, "scope");
+        Assert.assertEquals(executorService.tasks.size(), 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void coalescedRequestsCompletedWhenRefreshSchedulingFails() throws Exception {
+        DeferredExecutorService executorService = new DeferredExecutorService();
+        StubHttpTransport httpTransport = new StubHttpTransport();
+        ConfidentialClientApplication app = createApplication(executorService, httpTransport);
+
+        TokenRefreshScheduler tokenRefreshScheduler = EasyMock.createMock(TokenRefreshScheduler.class);
+        tokenRefreshScheduler.onTokenServed(EasyMock.isA(MsalRequest.class), EasyMock.isA(AuthenticationResult.class));
+        EasyMock.expectLastCall().andThrow(new IllegalStateException("scheduling failed"));
+        EasyMock.replay(tokenRefreshScheduler);
+        Whitebox.setInternalState(app, "tokenRefreshScheduler", tokenRefreshScheduler);
+
+        CompletableFuture<AuthenticationResult> first = acquireTokenForClient(app, "scope");
+        CompletableFuture<AuthenticationResult> second = acquireTokenForClient(app, "scope");
+        executorService.runAll();
+
+        HTTPResponse httpResponse = new HTTPResponse(HTTPResponse.SC_OK);
+        httpResponse.setContentType("application/json");
+        httpResponse.setContent("{\"access_token\":\"accessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+        ((CompletableFuture<HTTPResponse>) httpTransport.requests.get(0)).complete(httpResponse);
+
+        Assert.assertEquals(first.get(1, TimeUnit.SECONDS).accessToken(), "accessToken");
+        Assert.assertEquals(second.get(1, TimeUnit.SECONDS).accessToken(), "accessToken");
+        EasyMock.verify(tokenRefreshScheduler);
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.msal4j;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.testng.PowerMockTestCase;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@PowerMockIgnore({"javax.net.ssl.*"})
+@Test(groups = { "checkin" })
+@PrepareForTest({ PublicClientApplication.class })
+public class TokenRefreshSchedulerTest extends PowerMockTestCase {
+
+    private static final long TOKEN_LIFETIME_SEC = 3600;
+
+    private PublicClientApplication app;
+    private ScheduledExecutorService executor;
+    private TokenRefreshScheduler scheduler;
+    private SilentRequest request;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        app = PowerMock.createPartialMock(PublicClientApplication.class,
+                new String[] { "executeRequest" },
+                new PublicClientApplication.Builder(TestConfiguration.AAD_CLIENT_ID)
+                        .authority(TestConfiguration.AAD_TENANT_ENDPOINT));
+        executor = EasyMock.createMock(ScheduledExecutorService.class);
+        scheduler = new TokenRefreshScheduler(app, executor);
+
+        Account account = new Account();
+        account.homeAccountId = "uid.utid";
+        request = new SilentRequest(
+                SilentParameters.builder(Collections.singleton("User.Read"), account).build(),
+                app,
+                app.createRequestContext(AcquireTokenPublicApi.ACQUIRE_TOKEN_SILENTLY));
+    }
+
+    private static AuthenticationResult createResult() {
+        return AuthenticationResult.builder().
+                accessToken("accessToken").
+                expiresOn(System.currentTimeMillis() / 1000 + TOKEN_LIFETIME_SEC).
+                build();
+    }
+
+    private Capture<Runnable> expectSchedule(Capture<Long> delayMs) {
+        Capture<Runnable> task = EasyMock.newCapture();
+        EasyMock.expect(executor.schedule(EasyMock.capture(task), EasyMock.captureLong(delayMs),
+                EasyMock.eq(TimeUnit.MILLISECONDS))).andReturn(null);
+        return task;
+    }
+
+    @Test
+    public void refreshScheduledAheadOfExpirationTest() {
+        Capture<Long> delayMs = EasyMock.newCapture();
+        expectSchedule(delayMs);
+        PowerMock.replay(app, executor);
+
+        scheduler.onTokenServed(request, createResult());
+
+        long expectedDelayMs = (TOKEN_LIFETIME_SEC - TokenCache.MIN_ACCESS_TOKEN_EXPIRE_IN_SEC -
+                TokenRefreshScheduler.REFRESH_AHEAD_SEC) * 1000;
+        Assert.assertTrue(delayMs.getValue() <= expectedDelayMs);
+        Assert.assertTrue(delayMs.getValue() > expectedDelayMs - 2000);
+        Assert.assertEquals(scheduler.trackedRequests.size(), 1);
+        PowerMock.verify(app, executor);
+    }
+
+    @Test
+    public void tokenNotAccessedSinceRefreshIsDroppedTest() {
+        Capture<Runnable> task = expectSchedule(EasyMock.newCapture());
+        // no executeRequest call is expected
+        PowerMock.replay(app, executor);
+
+        scheduler.onTokenServed(request, createResult());
+        task.getValue().run();
+
+        Assert.assertTrue(scheduler.trackedRequests.isEmpty());
+        PowerMock.verify(app, executor);
+    }
+
+    @Test
+    public void accessedTokenIsRefreshedAndRescheduledTest() throws Exception {
+        Capture<Runnable> task = expectSchedule(EasyMock.newCapture());
+        Capture<MsalRequest> refreshRequest = EasyMock.newCapture();
+        EasyMock.expect(app.executeRequest(EasyMock.capture(refreshRequest)))
+                .andReturn(CompletableFuture.completedFuture(createResult()));
+        expectSchedule(EasyMock.newCapture());
+        PowerMock.replay(app, executor);
+
+        scheduler.onTokenServed(request, createResult());
+        Thread.sleep(5);
+        scheduler.onTokenServed(request, createResult());
+        task.getValue().run();
+
+        Assert.assertTrue(((SilentRequest) refreshRequest.getValue()).parameters().forceRefresh());
+        Assert.assertEquals(scheduler.trackedRequests.size(), 1);
+        PowerMock.verify(app, executor);
+    }
+
+    @Test
+    public void failedRefreshIsDroppedTest() throws Exception {
+        Capture<Runnable> task = expectSchedule(EasyMock.newCapture());
+        CompletableFuture<AuthenticationResult> failedRefresh = new CompletableFuture<>();
+        failedRefresh.completeExceptionally(new AuthenticationException("refresh failed"));
+        EasyMock.expect(app.executeRequest(EasyMock.isA(MsalRequest.class))).andReturn(failedRefresh);
+        PowerMock.replay(app, executor);
+
+        scheduler.onTokenServed(request, createResult());
+        Thread.sleep(5);
+        scheduler.onTokenServed(request, createResult());
+        task.getValue().run();
+
+        Assert.assertTrue(scheduler.trackedRequests.isEmpty());
+        PowerMock.verify(app, executor);
+    }
+
+    @Test
+    public void shutdownStopsRefreshTest() {
+        EasyMock.expect(executor.shutdownNow()).andReturn(Collections.emptyList());
+        PowerMock.replay(app, executor);
+
+        scheduler.shutdown();
+
+        Assert.assertTrue(scheduler.trackedRequests.isEmpty());
+        PowerMock.verify(app, executor);
+    }
+}
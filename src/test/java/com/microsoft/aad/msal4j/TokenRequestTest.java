@@ -33,7 +33,6 @@ import com.nimbusds.oauth2.sdk.auth.Secret;
 import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
 import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import com.nimbusds.oauth2.sdk.id.ClientID;
-import com.nimbusds.oauth2.sdk.util.JSONObjectUtils;
 import net.minidev.json.JSONObject;
 import org.easymock.EasyMock;
 import org.powermock.api.easymock.PowerMock;
@@ -241,13 +240,9 @@ public class TokenRequestTest extends AbstractMsalTests {
         EasyMock.expect(msalOAuthHttpRequest.send()).andReturn(httpResponse)
                 .times(1);
         EasyMock.expect(httpResponse.getStatusCode()).andReturn(200).times(1);
-        EasyMock.expect(httpResponse.getContentAsJSONObject())
-                .andReturn(
-                        JSONObjectUtils
-                                .parse(TestConfiguration.HTTP_RESPONSE_FROM_AUTH_CODE))
+        EasyMock.expect(httpResponse.getContent())
+                .andReturn(TestConfiguration.HTTP_RESPONSE_FROM_AUTH_CODE)
                 .times(1);
-        httpResponse.ensureStatusCode(200);
-        EasyMock.expectLastCall();
 
         EasyMock.expect(httpResponse.getHeaderValue("User-Agent")).andReturn(null);
         EasyMock.expect(httpResponse.getHeaderValue("x-ms-request-id")).andReturn(null);
@@ -88,4 +88,34 @@ public class TokenResponseTest extends AbstractMsalTests {
         final AccessToken accessToken = tokens.getAccessToken();
         Assert.assertNotNull(accessToken);
     }
+
+    @Test
+    public void testParseContent() throws com.nimbusds.oauth2.sdk.ParseException {
+        final TokenEndpointResponse response =
+                TokenEndpointResponse.parse(TestConfiguration.HTTP_RESPONSE_FROM_AUTH_CODE);
+        Assert.assertFalse(StringHelper.isBlank(response.getAccessToken()));
+        Assert.assertFalse(StringHelper.isBlank(response.getRefreshToken()));
+        Assert.assertFalse(StringHelper.isBlank(response.getIdToken()));
+        Assert.assertFalse(StringHelper.isBlank(response.getScope()));
+        Assert.assertFalse(StringHelper.isBlank(response.getClientInfo()));
+        Assert.assertTrue(response.getExpiresIn() > 0);
+    }
+
+    @Test(expectedExceptions = com.nimbusds.oauth2.sdk.ParseException.class)
+    public void testParseContentWithoutAccessToken() throws com.nimbusds.oauth2.sdk.ParseException {
+        TokenEndpointResponse.parse("{\"token_type\":\"Bearer\",\"expires_in\":3599}");
+    }
+
+    @Test
+    public void testParseIdToken() throws ParseException {
+        final IdToken parsed = IdToken.parse(idToken);
+
+        Assert.assertEquals(parsed.issuer, "https://sts.windows.net/d3eab132-b3f7-4d79-939c-30227aeb8c26/");
+        Assert.assertEquals(parsed.audience, "216ef81d-f3b2-47d4-ad21-a4df49b56dee");
+        Assert.assertEquals(parsed.subject, "feN4EN0MmoCvnlVhFMJyj334RwCZLlku1_1T5VSR7Lk");
+        Assert.assertEquals(parsed.objectIdentifier, "36b61813-3a2b-4508-ae8d-fc754201759a");
+        Assert.assertEquals(parsed.tenantIdentifier, "d3eab132-b3f7-4d79-939c-30227aeb8c26");
+        Assert.assertEquals(parsed.expirationTime, Long.valueOf(1393499937));
+        Assert.assertEquals(parsed.issuedAt, Long.valueOf(1393496037));
+    }
 }